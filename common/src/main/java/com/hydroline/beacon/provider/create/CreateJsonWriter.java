@@ -177,45 +177,49 @@ public final class CreateJsonWriter {
     private static JsonArray writeTrains(List<CreateRealtimeSnapshot.TrainStatus> trains) {
         JsonArray array = new JsonArray();
         for (CreateRealtimeSnapshot.TrainStatus train : trains) {
-            JsonObject json = new JsonObject();
-            json.addProperty("trainId", train.getTrainId());
-            json.addProperty("name", train.getName());
-            if (train.getIconId() != null) {
-                json.addProperty("iconId", train.getIconId());
-            }
-            json.addProperty("mapColorIndex", train.getMapColorIndex());
-            if (train.getStatus() != null) {
-                json.addProperty("status", train.getStatus());
-            }
-            json.addProperty("speed", train.getSpeed());
-            json.addProperty("targetSpeed", train.getTargetSpeed());
-            json.addProperty("throttle", train.getThrottle());
-            json.addProperty("derailed", train.isDerailed());
-            if (train.getGraphId() != null) {
-                json.addProperty("graphId", train.getGraphId());
-            }
-            if (train.getCurrentStationId() != null) {
-                json.addProperty("currentStationId", train.getCurrentStationId());
-            }
-            if (train.getScheduleTitle() != null) {
-                json.addProperty("scheduleTitle", train.getScheduleTitle());
-            }
-            if (train.getScheduleEntry() != null) {
-                json.addProperty("scheduleEntry", train.getScheduleEntry());
-            }
-            if (train.getScheduleState() != null) {
-                json.addProperty("scheduleState", train.getScheduleState());
-            }
-            json.addProperty("schedulePaused", train.isSchedulePaused());
-            json.addProperty("scheduleCompleted", train.isScheduleCompleted());
-            json.addProperty("scheduleAuto", train.isScheduleAuto());
-            json.add("positions", writeTrainPositions(train.getPositions()));
-            json.add("carriages", writeCarriages(train.getCarriages()));
-            array.add(json);
+            array.add(writeTrain(train));
         }
         return array;
     }
 
+    public static JsonObject writeTrain(CreateRealtimeSnapshot.TrainStatus train) {
+        JsonObject json = new JsonObject();
+        json.addProperty("trainId", train.getTrainId());
+        json.addProperty("name", train.getName());
+        if (train.getIconId() != null) {
+            json.addProperty("iconId", train.getIconId());
+        }
+        json.addProperty("mapColorIndex", train.getMapColorIndex());
+        if (train.getStatus() != null) {
+            json.addProperty("status", train.getStatus());
+        }
+        json.addProperty("speed", train.getSpeed());
+        json.addProperty("targetSpeed", train.getTargetSpeed());
+        json.addProperty("throttle", train.getThrottle());
+        json.addProperty("derailed", train.isDerailed());
+        if (train.getGraphId() != null) {
+            json.addProperty("graphId", train.getGraphId());
+        }
+        if (train.getCurrentStationId() != null) {
+            json.addProperty("currentStationId", train.getCurrentStationId());
+        }
+        if (train.getScheduleTitle() != null) {
+            json.addProperty("scheduleTitle", train.getScheduleTitle());
+        }
+        if (train.getScheduleEntry() != null) {
+            json.addProperty("scheduleEntry", train.getScheduleEntry());
+        }
+        if (train.getScheduleState() != null) {
+            json.addProperty("scheduleState", train.getScheduleState());
+        }
+        json.addProperty("schedulePaused", train.isSchedulePaused());
+        json.addProperty("scheduleCompleted", train.isScheduleCompleted());
+        json.addProperty("scheduleAuto", train.isScheduleAuto());
+        json.add("positions", writeTrainPositions(train.getPositions()));
+        json.add("carriages", writeCarriages(train.getCarriages()));
+        return json;
+    }
+
     private static JsonArray writeTrainPositions(List<CreateRealtimeSnapshot.DimensionPosition> positions) {
         JsonArray array = new JsonArray();
         for (CreateRealtimeSnapshot.DimensionPosition position : positions) {
@@ -284,21 +288,25 @@ public final class CreateJsonWriter {
     private static JsonArray writeGroups(List<CreateRealtimeSnapshot.GroupStatus> groups) {
         JsonArray array = new JsonArray();
         for (CreateRealtimeSnapshot.GroupStatus group : groups) {
-            JsonObject json = new JsonObject();
-            json.addProperty("groupId", group.getGroupId());
-            if (group.getColor() != null) {
-                json.addProperty("color", group.getColor());
-            }
-            if (group.getReservedBoundaryId() != null) {
-                json.addProperty("reservedBoundaryId", group.getReservedBoundaryId());
-            }
-            JsonArray trains = new JsonArray();
-            for (String trainId : group.getTrainIds()) {
-                trains.add(trainId);
-            }
-            json.add("trainIds", trains);
-            array.add(json);
+            array.add(writeGroup(group));
         }
         return array;
     }
+
+    public static JsonObject writeGroup(CreateRealtimeSnapshot.GroupStatus group) {
+        JsonObject json = new JsonObject();
+        json.addProperty("groupId", group.getGroupId());
+        if (group.getColor() != null) {
+            json.addProperty("color", group.getColor());
+        }
+        if (group.getReservedBoundaryId() != null) {
+            json.addProperty("reservedBoundaryId", group.getReservedBoundaryId());
+        }
+        JsonArray trains = new JsonArray();
+        for (String trainId : group.getTrainIds()) {
+            trains.add(trainId);
+        }
+        json.add("trainIds", trains);
+        return json;
+    }
 }
@@ -9,6 +9,30 @@ public interface CreateQueryGateway {
 
     CreateRealtimeSnapshot fetchRealtimeSnapshot();
 
+    /**
+     * Version token of the cached network for {@code graphId} (all graphs when {@code null}), derived from the stored
+     * graph checksums. Empty when the loader cannot tell.
+     */
+    default Optional<String> fetchNetworkVersion(String graphId) {
+        return Optional.empty();
+    }
+
+    /**
+     * @return a view that answers every query from its first read, for requests that must see one consistent state
+     *     across several queries (see {@code beacon:batch}). The network and the realtime feed are still read
+     *     independently, so the view is consistent per query, not across the two sources.
+     */
+    default CreateQueryGateway pinned() {
+        return new PinnedCreateQueryGateway(this);
+    }
+
+    /**
+     * @return {@code 0} for the live gateway, otherwise an id unique to one {@link #pinned()} view.
+     */
+    default long pinId() {
+        return 0L;
+    }
+
     CreateQueryGateway UNAVAILABLE = new CreateQueryGateway() {
         @Override
         public boolean isReady() {
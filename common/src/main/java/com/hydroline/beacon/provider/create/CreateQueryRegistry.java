@@ -1,18 +1,45 @@
 package com.hydroline.beacon.provider.create;
 
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
+/**
+ * Global registry for the loader's {@link CreateQueryGateway}. Like {@code MtrQueryRegistry}, a thread may temporarily
+ * override the gateway it sees with {@link #withGateway}, e.g. to run several actions against one
+ * {@link CreateQueryGateway#pinned()} view.
+ */
 public final class CreateQueryRegistry {
     private static final AtomicReference<CreateQueryGateway> GATEWAY = new AtomicReference<CreateQueryGateway>(CreateQueryGateway.UNAVAILABLE);
+    private static final ThreadLocal<CreateQueryGateway> OVERRIDE = new ThreadLocal<>();
 
     private CreateQueryRegistry() {
     }
 
     public static CreateQueryGateway get() {
-        return GATEWAY.get();
+        CreateQueryGateway override = OVERRIDE.get();
+        return override != null ? override : GATEWAY.get();
     }
 
     public static void register(CreateQueryGateway gateway) {
         GATEWAY.set(gateway == null ? CreateQueryGateway.UNAVAILABLE : gateway);
     }
+
+    /**
+     * Runs {@code action} with {@link #get()} returning {@code gateway} on the current thread.
+     */
+    public static <T> T withGateway(CreateQueryGateway gateway, Supplier<T> action) {
+        Objects.requireNonNull(gateway, "gateway");
+        CreateQueryGateway previous = OVERRIDE.get();
+        OVERRIDE.set(gateway);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                OVERRIDE.remove();
+            } else {
+                OVERRIDE.set(previous);
+            }
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package com.hydroline.beacon.provider.create;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the last few realtime captures as per-train/per-group JSON so a delta against any recent
+ * {@code capturedAt} can be produced without re-serializing unchanged entries.
+ */
+public final class CreateRealtimeDeltaEncoder {
+    private final int historySize;
+    private final LinkedHashMap<Long, Capture> history = new LinkedHashMap<>();
+
+    public CreateRealtimeDeltaEncoder(int historySize) {
+        if (historySize <= 0) {
+            throw new IllegalArgumentException("historySize must be > 0");
+        }
+        this.historySize = historySize;
+    }
+
+    public synchronized Capture record(CreateRealtimeSnapshot snapshot) {
+        Capture existing = history.get(snapshot.getCapturedAt());
+        if (existing != null) {
+            return existing;
+        }
+        Capture capture = new Capture(snapshot);
+        history.put(capture.capturedAt, capture);
+        Iterator<Long> iterator = history.keySet().iterator();
+        while (history.size() > historySize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        return capture;
+    }
+
+    /**
+     * Builds the changes between {@code baseCapturedAt} and {@code current}, or returns {@code null} when the base
+     * capture has already left the history and the caller has to fall back to a keyframe.
+     */
+    public synchronized JsonObject delta(long baseCapturedAt, Capture current) {
+        Capture base = history.get(baseCapturedAt);
+        if (base == null || base.capturedAt >= current.capturedAt) {
+            return null;
+        }
+        JsonObject payload = new JsonObject();
+        payload.addProperty("timestamp", current.capturedAt);
+        payload.addProperty("baseCapturedAt", base.capturedAt);
+        payload.add("trains", changed(base.trains, current.trains));
+        payload.add("removedTrains", removed(base.trains, current.trains));
+        payload.add("groups", changed(base.groups, current.groups));
+        payload.add("removedGroups", removed(base.groups, current.groups));
+        return payload;
+    }
+
+    private static JsonArray changed(Map<String, JsonObject> base, Map<String, JsonObject> current) {
+        JsonArray array = new JsonArray();
+        for (Map.Entry<String, JsonObject> entry : current.entrySet()) {
+            if (!entry.getValue().equals(base.get(entry.getKey()))) {
+                array.add(entry.getValue());
+            }
+        }
+        return array;
+    }
+
+    private static JsonArray removed(Map<String, JsonObject> base, Map<String, JsonObject> current) {
+        JsonArray array = new JsonArray();
+        for (String id : base.keySet()) {
+            if (!current.containsKey(id)) {
+                array.add(id);
+            }
+        }
+        return array;
+    }
+
+    public static final class Capture {
+        private final long capturedAt;
+        private final Map<String, JsonObject> trains = new LinkedHashMap<>();
+        private final Map<String, JsonObject> groups = new LinkedHashMap<>();
+        private final JsonObject keyframe;
+
+        private Capture(CreateRealtimeSnapshot snapshot) {
+            this.capturedAt = snapshot.getCapturedAt();
+            JsonArray trainArray = new JsonArray();
+            for (CreateRealtimeSnapshot.TrainStatus train : snapshot.getTrains()) {
+                JsonObject json = CreateJsonWriter.writeTrain(train);
+                trains.put(train.getTrainId(), json);
+                trainArray.add(json);
+            }
+            JsonArray groupArray = new JsonArray();
+            for (CreateRealtimeSnapshot.GroupStatus group : snapshot.getGroups()) {
+                JsonObject json = CreateJsonWriter.writeGroup(group);
+                groups.put(group.getGroupId(), json);
+                groupArray.add(json);
+            }
+            this.keyframe = new JsonObject();
+            keyframe.addProperty("timestamp", capturedAt);
+            keyframe.add("trains", trainArray);
+            keyframe.add("groups", groupArray);
+        }
+
+        public long getCapturedAt() {
+            return capturedAt;
+        }
+
+        /**
+         * Full payload in the same shape as {@link CreateJsonWriter#writeRealtimeSnapshot}.
+         */
+        public JsonObject getKeyframe() {
+            return keyframe;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.hydroline.beacon.provider.create;
+
+import com.hydroline.beacon.provider.BeaconProviderMod;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Fan-out point for freshly captured realtime snapshots. Loaders publish from the server thread, so listeners must
+ * hand any real work off to their own executor.
+ */
+public final class CreateRealtimeFeed {
+    private static final CopyOnWriteArrayList<Consumer<CreateRealtimeSnapshot>> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private CreateRealtimeFeed() {
+    }
+
+    public static void addListener(Consumer<CreateRealtimeSnapshot> listener) {
+        if (listener != null) {
+            LISTENERS.addIfAbsent(listener);
+        }
+    }
+
+    public static void removeListener(Consumer<CreateRealtimeSnapshot> listener) {
+        LISTENERS.remove(listener);
+    }
+
+    public static void publish(CreateRealtimeSnapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        for (Consumer<CreateRealtimeSnapshot> listener : LISTENERS) {
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException ex) {
+                BeaconProviderMod.LOGGER.warn("Create realtime listener failed", ex);
+            }
+        }
+    }
+}
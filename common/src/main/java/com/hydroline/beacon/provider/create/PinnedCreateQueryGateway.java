@@ -0,0 +1,70 @@
+package com.hydroline.beacon.provider.create;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link CreateQueryGateway#pinned()} view: the readiness, the realtime snapshot and each network query are read from
+ * the live gateway once and answered from that first read afterwards, so every caller of this view sees the same data.
+ */
+final class PinnedCreateQueryGateway implements CreateQueryGateway {
+    private static final AtomicLong PINS = new AtomicLong();
+
+    private final CreateQueryGateway delegate;
+    private final long pinId = PINS.incrementAndGet();
+    private final boolean ready;
+    private final Map<List<Object>, Optional<CreateNetworkSnapshot>> networks = new ConcurrentHashMap<>();
+    private final Map<List<Object>, Optional<String>> versions = new ConcurrentHashMap<>();
+    private volatile CreateRealtimeSnapshot realtime;
+
+    PinnedCreateQueryGateway(CreateQueryGateway delegate) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        this.ready = delegate.isReady();
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public Optional<CreateNetworkSnapshot> fetchNetworkSnapshot(String graphId, boolean includePolylines) {
+        return networks.computeIfAbsent(Arrays.<Object>asList(graphId, includePolylines),
+            key -> delegate.fetchNetworkSnapshot(graphId, includePolylines));
+    }
+
+    @Override
+    public CreateRealtimeSnapshot fetchRealtimeSnapshot() {
+        CreateRealtimeSnapshot snapshot = realtime;
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = realtime;
+                if (snapshot == null) {
+                    snapshot = delegate.fetchRealtimeSnapshot();
+                    realtime = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public Optional<String> fetchNetworkVersion(String graphId) {
+        return versions.computeIfAbsent(Arrays.<Object>asList(graphId), key -> delegate.fetchNetworkVersion(graphId));
+    }
+
+    @Override
+    public CreateQueryGateway pinned() {
+        return this;
+    }
+
+    @Override
+    public long pinId() {
+        return pinId;
+    }
+}
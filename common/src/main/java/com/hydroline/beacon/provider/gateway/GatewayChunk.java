@@ -0,0 +1,24 @@
+package com.hydroline.beacon.provider.gateway;
+
+/**
+ * One slice of a response attachment, written as the body of a {@code response_chunk} frame.
+ */
+final class GatewayChunk {
+    final String requestId;
+    final int attachment;
+    final int index;
+    final boolean last;
+    final byte[] data;
+    final int offset;
+    final int length;
+
+    GatewayChunk(String requestId, int attachment, int index, boolean last, byte[] data, int offset, int length) {
+        this.requestId = requestId;
+        this.attachment = attachment;
+        this.index = index;
+        this.last = last;
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+}
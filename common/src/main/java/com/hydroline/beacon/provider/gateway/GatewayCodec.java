@@ -4,8 +4,20 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.UUID;
 
 public final class GatewayCodec {
@@ -14,33 +26,76 @@ public final class GatewayCodec {
     private GatewayCodec() {
     }
 
-    public static GatewayEnvelope decode(byte[] payload) {
-        JsonObject root = GSON.fromJson(new String(payload, StandardCharsets.UTF_8), JsonObject.class);
-        if (root == null || !root.has("type")) {
-            throw new JsonParseException("Missing type field");
+    /**
+     * Streams the envelope straight out of {@code frame} without copying it into a {@code byte[]} or
+     * {@link String}; only the body is materialized as a tree.
+     */
+    public static GatewayEnvelope decode(ByteBuf frame) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteBufInputStream(frame), StandardCharsets.UTF_8))) {
+            GatewayMessageType type = null;
+            UUID connectionId = null;
+            JsonObject body = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("type".equals(name)) {
+                    type = GatewayMessageType.fromWireName(reader.nextString());
+                } else if ("connectionId".equals(name) && reader.peek() == JsonToken.STRING) {
+                    connectionId = UUID.fromString(reader.nextString());
+                } else if ("body".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    body = JsonParser.parseReader(reader).getAsJsonObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (type == null) {
+                throw new JsonParseException("Missing type field");
+            }
+            return new GatewayEnvelope(type, connectionId, body != null ? body : new JsonObject());
+        } catch (IOException | IllegalStateException ex) {
+            throw new JsonParseException("Invalid gateway envelope", ex);
         }
-        GatewayMessageType type = GatewayMessageType.fromWireName(root.get("type").getAsString());
-        UUID connectionId = root.has("connectionId") ? UUID.fromString(root.get("connectionId").getAsString()) : null;
-        JsonObject body = root.has("body") && root.get("body").isJsonObject() ? root.getAsJsonObject("body") : new JsonObject();
-        return new GatewayEnvelope(type, connectionId, body);
     }
 
-    public static byte[] encode(GatewayMessageType type, UUID connectionId, JsonObject body) {
-        JsonObject root = new JsonObject();
-        root.addProperty("type", type.wireName());
-        root.addProperty("timestamp", Instant.now().toEpochMilli());
+    /**
+     * Streams the envelope into {@code out}; used by the frame writer to encode straight into a {@code ByteBuf}.
+     */
+    public static void write(OutputStream out, GatewayMessageType type, UUID connectionId, JsonObject body) throws IOException {
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.beginObject();
+        writer.name("type").value(type.wireName());
+        writer.name("timestamp").value(Instant.now().toEpochMilli());
         if (connectionId != null) {
-            root.addProperty("connectionId", connectionId.toString());
+            writer.name("connectionId").value(connectionId.toString());
         }
-        root.add("body", body != null ? body : new JsonObject());
-        return GSON.toJson(root).getBytes(StandardCharsets.UTF_8);
+        writer.name("body");
+        GSON.toJson(body != null ? body : new JsonObject(), writer);
+        writer.endObject();
+        writer.flush();
     }
 
-    public static JsonObject parseBody(byte[] payload) {
-        JsonObject root = GSON.fromJson(new String(payload, StandardCharsets.UTF_8), JsonObject.class);
-        if (root == null) {
-            throw new JsonParseException("Invalid JSON");
+    /**
+     * Writes a {@code response_chunk} envelope; JSON has no binary type so the slice is base64 encoded.
+     */
+    static void writeChunk(OutputStream out, UUID connectionId, GatewayChunk chunk) throws IOException {
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.beginObject();
+        writer.name("type").value(GatewayMessageType.RESPONSE_CHUNK.wireName());
+        writer.name("timestamp").value(Instant.now().toEpochMilli());
+        if (connectionId != null) {
+            writer.name("connectionId").value(connectionId.toString());
         }
-        return root;
+        writer.name("body").beginObject();
+        writer.name("requestId").value(chunk.requestId);
+        writer.name("attachment").value(chunk.attachment);
+        writer.name("index").value(chunk.index);
+        writer.name("final").value(chunk.last);
+        writer.name("encoding").value("base64");
+        writer.name("data").value(Base64.getEncoder().encodeToString(
+            Arrays.copyOfRange(chunk.data, chunk.offset, chunk.offset + chunk.length)));
+        writer.endObject();
+        writer.endObject();
+        writer.flush();
     }
 }
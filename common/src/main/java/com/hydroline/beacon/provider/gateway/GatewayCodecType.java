@@ -0,0 +1,73 @@
+package com.hydroline.beacon.provider.gateway;
+
+import com.google.gson.JsonObject;
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Envelope encodings a gateway connection can negotiate through the {@code codec} handshake field.
+ */
+public enum GatewayCodecType {
+    JSON("json") {
+        @Override
+        public GatewayEnvelope decode(ByteBuf frame) {
+            return GatewayCodec.decode(frame);
+        }
+
+        @Override
+        public void write(OutputStream out, GatewayMessageType type, UUID connectionId, JsonObject body) throws IOException {
+            GatewayCodec.write(out, type, connectionId, body);
+        }
+
+        @Override
+        void writeChunk(OutputStream out, UUID connectionId, GatewayChunk chunk) throws IOException {
+            GatewayCodec.writeChunk(out, connectionId, chunk);
+        }
+    },
+    MSGPACK("msgpack") {
+        @Override
+        public GatewayEnvelope decode(ByteBuf frame) {
+            return GatewayMessagePackCodec.decode(frame);
+        }
+
+        @Override
+        public void write(OutputStream out, GatewayMessageType type, UUID connectionId, JsonObject body) throws IOException {
+            GatewayMessagePackCodec.write(out, type, connectionId, body);
+        }
+
+        @Override
+        void writeChunk(OutputStream out, UUID connectionId, GatewayChunk chunk) throws IOException {
+            GatewayMessagePackCodec.writeChunk(out, connectionId, chunk);
+        }
+    };
+
+    private final String wireName;
+
+    GatewayCodecType(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String wireName() {
+        return wireName;
+    }
+
+    public abstract GatewayEnvelope decode(ByteBuf frame);
+
+    public abstract void write(OutputStream out, GatewayMessageType type, UUID connectionId, JsonObject body) throws IOException;
+
+    abstract void writeChunk(OutputStream out, UUID connectionId, GatewayChunk chunk) throws IOException;
+
+    /**
+     * Returns the codec for {@code wireName}, or {@code null} when the client asked for something we do not speak.
+     */
+    public static GatewayCodecType fromWireName(String wireName) {
+        for (GatewayCodecType codec : values()) {
+            if (codec.wireName.equalsIgnoreCase(wireName)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
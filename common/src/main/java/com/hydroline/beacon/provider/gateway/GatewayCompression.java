@@ -0,0 +1,31 @@
+package com.hydroline.beacon.provider.gateway;
+
+/**
+ * Frame compression algorithms a gateway connection can negotiate through the {@code compression} handshake field.
+ */
+public enum GatewayCompression {
+    NONE("none"),
+    DEFLATE("deflate");
+
+    private final String wireName;
+
+    GatewayCompression(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String wireName() {
+        return wireName;
+    }
+
+    /**
+     * Returns the algorithm for {@code wireName}, or {@code null} when it is not supported by this provider.
+     */
+    public static GatewayCompression fromWireName(String wireName) {
+        for (GatewayCompression compression : values()) {
+            if (compression.wireName.equalsIgnoreCase(wireName)) {
+                return compression;
+            }
+        }
+        return null;
+    }
+}
@@ -3,11 +3,19 @@ package com.hydroline.beacon.provider.gateway;
 import java.util.Objects;
 
 public final class GatewayConfig {
+    public static final int MAX_STREAM_CHUNK_BYTES = 512 * 1024;
+
     private final String listenAddress;
     private final int listenPort;
     private final String authToken;
     private final int handshakeTimeoutSeconds;
     private final int idleTimeoutSeconds;
+    private final int dispatchThreads;
+    private final int dispatchQueueCapacity;
+    private final GatewayRejectionPolicy dispatchRejectionPolicy;
+    private final int maxInFlightPerConnection;
+    private final int compressionThresholdBytes;
+    private final int streamChunkBytes;
 
     private GatewayConfig(Builder builder) {
         this.listenAddress = builder.listenAddress;
@@ -15,6 +23,12 @@ public final class GatewayConfig {
         this.authToken = builder.authToken;
         this.handshakeTimeoutSeconds = builder.handshakeTimeoutSeconds;
         this.idleTimeoutSeconds = builder.idleTimeoutSeconds;
+        this.dispatchThreads = builder.dispatchThreads;
+        this.dispatchQueueCapacity = builder.dispatchQueueCapacity;
+        this.dispatchRejectionPolicy = builder.dispatchRejectionPolicy;
+        this.maxInFlightPerConnection = builder.maxInFlightPerConnection;
+        this.compressionThresholdBytes = builder.compressionThresholdBytes;
+        this.streamChunkBytes = builder.streamChunkBytes;
     }
 
     public static Builder builder() {
@@ -28,6 +42,12 @@ public final class GatewayConfig {
             .authToken("change-me")
             .handshakeTimeoutSeconds(10)
             .idleTimeoutSeconds(240)
+            .dispatchThreads(4)
+            .dispatchQueueCapacity(256)
+            .dispatchRejectionPolicy(GatewayRejectionPolicy.BUSY)
+            .maxInFlightPerConnection(16)
+            .compressionThresholdBytes(8192)
+            .streamChunkBytes(256 * 1024)
             .build();
     }
 
@@ -51,12 +71,42 @@ public final class GatewayConfig {
         return idleTimeoutSeconds;
     }
 
+    public int dispatchThreads() {
+        return dispatchThreads;
+    }
+
+    public int dispatchQueueCapacity() {
+        return dispatchQueueCapacity;
+    }
+
+    public GatewayRejectionPolicy dispatchRejectionPolicy() {
+        return dispatchRejectionPolicy;
+    }
+
+    public int maxInFlightPerConnection() {
+        return maxInFlightPerConnection;
+    }
+
+    public int compressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    public int streamChunkBytes() {
+        return streamChunkBytes;
+    }
+
     public static final class Builder {
         private String listenAddress;
         private int listenPort;
         private String authToken;
         private int handshakeTimeoutSeconds;
         private int idleTimeoutSeconds;
+        private int dispatchThreads;
+        private int dispatchQueueCapacity;
+        private GatewayRejectionPolicy dispatchRejectionPolicy;
+        private int maxInFlightPerConnection;
+        private int compressionThresholdBytes;
+        private int streamChunkBytes;
 
         private Builder() {
         }
@@ -86,6 +136,36 @@ public final class GatewayConfig {
             return this;
         }
 
+        public Builder dispatchThreads(int threads) {
+            this.dispatchThreads = threads;
+            return this;
+        }
+
+        public Builder dispatchQueueCapacity(int capacity) {
+            this.dispatchQueueCapacity = capacity;
+            return this;
+        }
+
+        public Builder dispatchRejectionPolicy(GatewayRejectionPolicy policy) {
+            this.dispatchRejectionPolicy = Objects.requireNonNull(policy, "dispatchRejectionPolicy");
+            return this;
+        }
+
+        public Builder maxInFlightPerConnection(int maxInFlight) {
+            this.maxInFlightPerConnection = maxInFlight;
+            return this;
+        }
+
+        public Builder compressionThresholdBytes(int thresholdBytes) {
+            this.compressionThresholdBytes = thresholdBytes;
+            return this;
+        }
+
+        public Builder streamChunkBytes(int chunkBytes) {
+            this.streamChunkBytes = chunkBytes;
+            return this;
+        }
+
         public GatewayConfig build() {
             if (listenAddress == null) {
                 throw new IllegalStateException("listenAddress not set");
@@ -102,6 +182,25 @@ public final class GatewayConfig {
             if (idleTimeoutSeconds <= 0) {
                 throw new IllegalStateException("idleTimeoutSeconds must be > 0");
             }
+            if (dispatchThreads <= 0) {
+                throw new IllegalStateException("dispatchThreads must be > 0");
+            }
+            if (dispatchQueueCapacity <= 0) {
+                throw new IllegalStateException("dispatchQueueCapacity must be > 0");
+            }
+            if (dispatchRejectionPolicy == null) {
+                throw new IllegalStateException("dispatchRejectionPolicy not set");
+            }
+            if (maxInFlightPerConnection <= 0) {
+                throw new IllegalStateException("maxInFlightPerConnection must be > 0");
+            }
+            if (compressionThresholdBytes < 0) {
+                throw new IllegalStateException("compressionThresholdBytes must be >= 0");
+            }
+            // base64 chunks on JSON connections grow by a third and must still fit the 1 MiB inbound frame limit
+            if (streamChunkBytes < 1024 || streamChunkBytes > MAX_STREAM_CHUNK_BYTES) {
+                throw new IllegalStateException("streamChunkBytes must be between 1024 and " + MAX_STREAM_CHUNK_BYTES);
+            }
             return new GatewayConfig(this);
         }
     }
@@ -56,6 +56,19 @@ public final class GatewayConfigLoader {
         builder.authToken(json.has("authToken") ? json.get("authToken").getAsString() : "change-me");
         builder.handshakeTimeoutSeconds(json.has("handshakeTimeoutSeconds") ? json.get("handshakeTimeoutSeconds").getAsInt() : 10);
         builder.idleTimeoutSeconds(json.has("idleTimeoutSeconds") ? json.get("idleTimeoutSeconds").getAsInt() : 240);
+        builder.dispatchThreads(json.has("dispatchThreads") ? json.get("dispatchThreads").getAsInt() : 4);
+        builder.dispatchQueueCapacity(json.has("dispatchQueueCapacity") ? json.get("dispatchQueueCapacity").getAsInt() : 256);
+        try {
+            builder.dispatchRejectionPolicy(json.has("dispatchRejectionPolicy")
+                ? GatewayRejectionPolicy.fromWireName(json.get("dispatchRejectionPolicy").getAsString())
+                : GatewayRejectionPolicy.BUSY);
+        } catch (IllegalArgumentException ex) {
+            BeaconProviderMod.LOGGER.warn("Unsupported dispatchRejectionPolicy, using busy", ex);
+            builder.dispatchRejectionPolicy(GatewayRejectionPolicy.BUSY);
+        }
+        builder.maxInFlightPerConnection(json.has("maxInFlightPerConnection") ? json.get("maxInFlightPerConnection").getAsInt() : 16);
+        builder.compressionThresholdBytes(json.has("compressionThresholdBytes") ? json.get("compressionThresholdBytes").getAsInt() : 8192);
+        builder.streamChunkBytes(json.has("streamChunkBytes") ? json.get("streamChunkBytes").getAsInt() : 256 * 1024);
         try {
             return builder.build();
         } catch (IllegalStateException ex) {
@@ -71,6 +84,12 @@ public final class GatewayConfigLoader {
         json.addProperty("authToken", config.authToken());
         json.addProperty("handshakeTimeoutSeconds", config.handshakeTimeoutSeconds());
         json.addProperty("idleTimeoutSeconds", config.idleTimeoutSeconds());
+        json.addProperty("dispatchThreads", config.dispatchThreads());
+        json.addProperty("dispatchQueueCapacity", config.dispatchQueueCapacity());
+        json.addProperty("dispatchRejectionPolicy", config.dispatchRejectionPolicy().wireName());
+        json.addProperty("maxInFlightPerConnection", config.maxInFlightPerConnection());
+        json.addProperty("compressionThresholdBytes", config.compressionThresholdBytes());
+        json.addProperty("streamChunkBytes", config.streamChunkBytes());
         return json;
     }
 }
@@ -1,8 +1,12 @@
 package com.hydroline.beacon.provider.gateway;
 
 import com.google.gson.JsonObject;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -10,12 +14,19 @@ import java.util.concurrent.TimeUnit;
 final class GatewayConnection {
     private final Channel channel;
     private final UUID tempId = UUID.randomUUID();
+    private final int maxInFlight;
+    private final Queue<Runnable> deferredRequests = new ArrayDeque<>();
     private UUID connectionId;
     private boolean handshakeComplete;
     private ScheduledFuture<?> handshakeTimeout;
+    private int inFlight;
+    private volatile GatewayCodecType codec = GatewayCodecType.JSON;
+    private volatile GatewayCompression compression = GatewayCompression.NONE;
+    private volatile int compressionThreshold;
 
-    GatewayConnection(Channel channel) {
+    GatewayConnection(Channel channel, int maxInFlight) {
         this.channel = channel;
+        this.maxInFlight = maxInFlight;
     }
 
     UUID temporaryId() {
@@ -35,8 +46,98 @@ final class GatewayConnection {
         return handshakeComplete;
     }
 
+    GatewayCodecType codec() {
+        return codec;
+    }
+
+    /**
+     * Switches the envelope encoding for every frame after the handshake ack.
+     */
+    void useCodec(GatewayCodecType codec) {
+        this.codec = codec;
+    }
+
+    GatewayCompression compression() {
+        return compression;
+    }
+
+    /**
+     * From now on every frame in both directions carries a compression flag byte.
+     */
+    void useCompression(GatewayCompression compression, int threshold) {
+        this.compressionThreshold = threshold;
+        this.compression = compression;
+    }
+
     void send(GatewayMessageType type, JsonObject body) {
-        channel.writeAndFlush(channel.alloc().buffer().writeBytes(GatewayCodec.encode(type, connectionId, body)));
+        channel.writeAndFlush(encode(channel.alloc(), type, body));
+    }
+
+    ByteBuf encode(ByteBufAllocator alloc, GatewayMessageType type, JsonObject body) {
+        return GatewayFrameWriter.write(alloc, codec, compression, compressionThreshold, type, connectionId, body);
+    }
+
+    /**
+     * Encodes a frame without the connection id so the same bytes can be written to every connection that shares
+     * this connection's {@link #frameFormat()}.
+     */
+    ByteBuf encodeShared(ByteBufAllocator alloc, GatewayMessageType type, JsonObject body) {
+        return GatewayFrameWriter.write(alloc, codec, compression, compressionThreshold, type, null, body);
+    }
+
+    /**
+     * Identifies the codec/compression pair; frames from {@link #encodeShared} are interchangeable within one format.
+     */
+    String frameFormat() {
+        return codec.wireName() + '/' + compression.wireName();
+    }
+
+    ByteBuf encodeChunk(ByteBufAllocator alloc, GatewayChunk chunk) {
+        return GatewayFrameWriter.writeChunk(alloc, codec, compression, compressionThreshold, connectionId, chunk);
+    }
+
+    /**
+     * Event loop only. Claims an in-flight slot and stops reading once the connection is saturated.
+     */
+    boolean tryAcquireSlot() {
+        if (inFlight >= maxInFlight) {
+            return false;
+        }
+        inFlight++;
+        if (inFlight >= maxInFlight) {
+            channel.config().setAutoRead(false);
+        }
+        return true;
+    }
+
+    /**
+     * Event loop only. Parks a request that arrived in the same read batch after the limit was reached.
+     */
+    void deferRequest(Runnable request) {
+        deferredRequests.add(request);
+        channel.config().setAutoRead(false);
+    }
+
+    /**
+     * Event loop only. Returns the next deferred request, which inherits the released slot, or {@code null}
+     * after the slot was freed and reading resumed.
+     */
+    Runnable releaseSlot() {
+        Runnable next = deferredRequests.poll();
+        if (next != null) {
+            return next;
+        }
+        if (inFlight > 0) {
+            inFlight--;
+        }
+        if (inFlight < maxInFlight && !channel.config().isAutoRead()) {
+            channel.config().setAutoRead(true);
+        }
+        return null;
+    }
+
+    void clearDeferredRequests() {
+        deferredRequests.clear();
     }
 
     void scheduleHandshakeTimeout(Runnable action, long delay, TimeUnit unit) {
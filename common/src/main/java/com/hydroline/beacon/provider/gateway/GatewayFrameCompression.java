@@ -0,0 +1,114 @@
+package com.hydroline.beacon.provider.gateway;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Adds and strips the one-byte compression flag that prefixes every frame once compression has been negotiated.
+ */
+final class GatewayFrameCompression {
+    static final byte FLAG_RAW = 0;
+    static final byte FLAG_DEFLATE = 1;
+    /** Upper bound for an inflated inbound frame so a tiny frame cannot expand without limit. */
+    static final int MAX_INFLATED_BYTES = 16 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private GatewayFrameCompression() {
+    }
+
+    /**
+     * Takes a complete outbound frame laid out as {@code [length][FLAG_RAW][payload]} and returns a deflated frame
+     * when the payload is at least {@code threshold} bytes and compression actually makes it smaller. The input is
+     * released when a compressed frame is returned; the length prefix of the result is left for the caller to patch.
+     */
+    static ByteBuf deflateFrame(ByteBufAllocator alloc, ByteBuf frame, int threshold) {
+        int payloadOffset = frame.readerIndex() + GatewayFrameWriter.LENGTH_BYTES + 1;
+        int payloadLength = frame.writerIndex() - payloadOffset;
+        if (payloadLength < threshold) {
+            return frame;
+        }
+        ByteBuf out = alloc.ioBuffer(Math.max(64, payloadLength / 4));
+        out.writeInt(0);
+        out.writeByte(FLAG_DEFLATE);
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] input = frame.hasArray() ? null : new byte[BUFFER_SIZE * 8];
+        int position = payloadOffset;
+        int end = payloadOffset + payloadLength;
+        while (position < end) {
+            // direct buffers are fed in segments so the payload is never copied in one piece
+            if (input == null) {
+                deflater.setInput(frame.array(), frame.arrayOffset() + position, end - position);
+                position = end;
+            } else {
+                int length = Math.min(input.length, end - position);
+                frame.getBytes(position, input, 0, length);
+                deflater.setInput(input, 0, length);
+                position += length;
+            }
+            while (!deflater.needsInput()) {
+                out.writeBytes(buffer, 0, deflater.deflate(buffer));
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            out.writeBytes(buffer, 0, deflater.deflate(buffer));
+        }
+        if (out.readableBytes() >= frame.readableBytes()) {
+            out.release();
+            return frame;
+        }
+        frame.release();
+        return out;
+    }
+
+    /**
+     * Reads the flag byte of an inbound frame and returns the payload: a slice of {@code frame} when it was sent raw,
+     * or a heap buffer holding the inflated bytes.
+     */
+    static ByteBuf decode(ByteBuf frame) throws DataFormatException {
+        if (!frame.isReadable()) {
+            throw new DataFormatException("Missing compression flag");
+        }
+        byte flag = frame.readByte();
+        switch (flag) {
+            case FLAG_RAW:
+                return frame.slice();
+            case FLAG_DEFLATE: {
+                byte[] compressed = new byte[frame.readableBytes()];
+                frame.readBytes(compressed);
+                return Unpooled.wrappedBuffer(inflate(compressed));
+            }
+            default:
+                throw new DataFormatException("Unknown compression flag " + flag);
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) throws DataFormatException {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (!inflater.finished()) {
+            int read = inflater.inflate(buffer);
+            if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new DataFormatException("Truncated deflate frame");
+            }
+            out.write(buffer, 0, read);
+            if (out.size() > MAX_INFLATED_BYTES) {
+                throw new DataFormatException("Inflated frame exceeds " + MAX_INFLATED_BYTES + " bytes");
+            }
+        }
+        return out.toByteArray();
+    }
+}
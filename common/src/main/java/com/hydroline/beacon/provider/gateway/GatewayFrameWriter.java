@@ -0,0 +1,74 @@
+package com.hydroline.beacon.provider.gateway;
+
+import com.google.gson.JsonObject;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Encodes outbound frames directly into a pooled buffer: the length prefix is reserved up front and back-patched
+ * once the envelope has been streamed in, so no intermediate {@code byte[]} copy of the payload exists.
+ */
+final class GatewayFrameWriter {
+    static final int LENGTH_BYTES = 4;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private GatewayFrameWriter() {
+    }
+
+    static ByteBuf write(ByteBufAllocator alloc,
+                         GatewayCodecType codec,
+                         GatewayCompression compression,
+                         int compressionThreshold,
+                         GatewayMessageType type,
+                         UUID connectionId,
+                         JsonObject body) {
+        return frame(alloc, compression, compressionThreshold, type,
+            out -> codec.write(out, type, connectionId, body));
+    }
+
+    /**
+     * Encodes one {@code response_chunk} frame carrying {@code length} bytes of {@code data} from {@code offset}.
+     */
+    static ByteBuf writeChunk(ByteBufAllocator alloc,
+                              GatewayCodecType codec,
+                              GatewayCompression compression,
+                              int compressionThreshold,
+                              UUID connectionId,
+                              GatewayChunk chunk) {
+        return frame(alloc, compression, compressionThreshold, GatewayMessageType.RESPONSE_CHUNK,
+            out -> codec.writeChunk(out, connectionId, chunk));
+    }
+
+    private static ByteBuf frame(ByteBufAllocator alloc,
+                                 GatewayCompression compression,
+                                 int compressionThreshold,
+                                 GatewayMessageType type,
+                                 EnvelopeWriter writer) {
+        ByteBuf frame = alloc.ioBuffer(INITIAL_CAPACITY);
+        try {
+            frame.writeInt(0);
+            if (compression != GatewayCompression.NONE) {
+                frame.writeByte(GatewayFrameCompression.FLAG_RAW);
+            }
+            try (ByteBufOutputStream out = new ByteBufOutputStream(frame)) {
+                writer.write(out);
+            }
+        } catch (IOException | RuntimeException ex) {
+            frame.release();
+            throw new IllegalStateException("Failed to encode " + type.wireName() + " frame", ex);
+        }
+        if (compression == GatewayCompression.DEFLATE) {
+            frame = GatewayFrameCompression.deflateFrame(alloc, frame, compressionThreshold);
+        }
+        frame.setInt(frame.readerIndex(), frame.readableBytes() - LENGTH_BYTES);
+        return frame;
+    }
+
+    private interface EnvelopeWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
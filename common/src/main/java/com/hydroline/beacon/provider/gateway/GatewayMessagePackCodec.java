@@ -0,0 +1,205 @@
+package com.hydroline.beacon.provider.gateway;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessagePackException;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ValueType;
+
+/**
+ * MessagePack flavour of {@link GatewayCodec}: the envelope is a map with the same keys and the body is packed
+ * straight from the Gson tree, so no intermediate JSON string is produced.
+ */
+final class GatewayMessagePackCodec {
+    private GatewayMessagePackCodec() {
+    }
+
+    static GatewayEnvelope decode(ByteBuf frame) {
+        try (MessageUnpacker unpacker = newUnpacker(frame)) {
+            if (unpacker.getNextFormat().getValueType() != ValueType.MAP) {
+                throw new JsonParseException("Envelope must be a map");
+            }
+            GatewayMessageType type = null;
+            UUID connectionId = null;
+            JsonObject body = null;
+            int size = unpacker.unpackMapHeader();
+            for (int i = 0; i < size; i++) {
+                JsonElement key = unpackElement(unpacker);
+                String name = key.isJsonPrimitive() ? key.getAsString() : "";
+                if ("type".equals(name)) {
+                    type = GatewayMessageType.fromWireName(unpacker.unpackString());
+                } else if ("connectionId".equals(name) && unpacker.getNextFormat().getValueType() == ValueType.STRING) {
+                    connectionId = UUID.fromString(unpacker.unpackString());
+                } else if ("body".equals(name) && unpacker.getNextFormat().getValueType() == ValueType.MAP) {
+                    body = unpackElement(unpacker).getAsJsonObject();
+                } else {
+                    unpacker.skipValue();
+                }
+            }
+            if (type == null) {
+                throw new JsonParseException("Missing type field");
+            }
+            return new GatewayEnvelope(type, connectionId, body != null ? body : new JsonObject());
+        } catch (IOException | MessagePackException ex) {
+            throw new JsonParseException("Invalid MessagePack envelope", ex);
+        }
+    }
+
+    /**
+     * Heap frames are unpacked from their backing array; direct frames go through a stream because msgpack-core's
+     * direct-buffer access needs reflective access to {@code java.nio} that Java 17 servers do not grant.
+     */
+    private static MessageUnpacker newUnpacker(ByteBuf frame) {
+        if (frame.hasArray()) {
+            return MessagePack.newDefaultUnpacker(frame.array(), frame.arrayOffset() + frame.readerIndex(), frame.readableBytes());
+        }
+        return MessagePack.newDefaultUnpacker(new ByteBufInputStream(frame));
+    }
+
+    static void write(OutputStream out, GatewayMessageType type, UUID connectionId, JsonObject body) throws IOException {
+        MessagePacker packer = MessagePack.newDefaultPacker(out);
+        packer.packMapHeader(connectionId != null ? 4 : 3);
+        packer.packString("type").packString(type.wireName());
+        packer.packString("timestamp").packLong(Instant.now().toEpochMilli());
+        if (connectionId != null) {
+            packer.packString("connectionId").packString(connectionId.toString());
+        }
+        packer.packString("body");
+        packElement(packer, body != null ? body : new JsonObject());
+        packer.flush();
+    }
+
+    /**
+     * Writes a {@code response_chunk} envelope with the slice as a native MessagePack binary value.
+     */
+    static void writeChunk(OutputStream out, UUID connectionId, GatewayChunk chunk) throws IOException {
+        MessagePacker packer = MessagePack.newDefaultPacker(out);
+        packer.packMapHeader(connectionId != null ? 4 : 3);
+        packer.packString("type").packString(GatewayMessageType.RESPONSE_CHUNK.wireName());
+        packer.packString("timestamp").packLong(Instant.now().toEpochMilli());
+        if (connectionId != null) {
+            packer.packString("connectionId").packString(connectionId.toString());
+        }
+        packer.packString("body").packMapHeader(5);
+        packer.packString("requestId").packString(chunk.requestId);
+        packer.packString("attachment").packInt(chunk.attachment);
+        packer.packString("index").packInt(chunk.index);
+        packer.packString("final").packBoolean(chunk.last);
+        packer.packString("data").packBinaryHeader(chunk.length);
+        packer.writePayload(chunk.data, chunk.offset, chunk.length);
+        packer.flush();
+    }
+
+    static void packElement(MessagePacker packer, JsonElement element) throws IOException {
+        if (element == null || element.isJsonNull()) {
+            packer.packNil();
+        } else if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            packer.packMapHeader(object.size());
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                packer.packString(entry.getKey());
+                packElement(packer, entry.getValue());
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            packer.packArrayHeader(array.size());
+            for (JsonElement child : array) {
+                packElement(packer, child);
+            }
+        } else {
+            packPrimitive(packer, element.getAsJsonPrimitive());
+        }
+    }
+
+    private static void packPrimitive(MessagePacker packer, JsonPrimitive primitive) throws IOException {
+        if (primitive.isBoolean()) {
+            packer.packBoolean(primitive.getAsBoolean());
+            return;
+        }
+        if (primitive.isString()) {
+            packer.packString(primitive.getAsString());
+            return;
+        }
+        Number number = primitive.getAsNumber();
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            packer.packLong(number.longValue());
+            return;
+        }
+        if (number instanceof Double || number instanceof Float) {
+            packer.packDouble(number.doubleValue());
+            return;
+        }
+        // LazilyParsedNumber / BigDecimal / BigInteger: keep integers integral
+        String text = number.toString();
+        if (text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0) {
+            packer.packDouble(Double.parseDouble(text));
+            return;
+        }
+        BigInteger value = new BigInteger(text);
+        if (value.bitLength() < 64) {
+            packer.packLong(value.longValue());
+        } else {
+            packer.packBigInteger(value);
+        }
+    }
+
+    static JsonElement unpackElement(MessageUnpacker unpacker) throws IOException {
+        MessageFormat format = unpacker.getNextFormat();
+        switch (format.getValueType()) {
+            case NIL:
+                unpacker.unpackNil();
+                return JsonNull.INSTANCE;
+            case BOOLEAN:
+                return new JsonPrimitive(unpacker.unpackBoolean());
+            case INTEGER:
+                if (format == MessageFormat.UINT64) {
+                    BigInteger value = unpacker.unpackBigInteger();
+                    return value.bitLength() < 64 ? new JsonPrimitive(value.longValue()) : new JsonPrimitive(value);
+                }
+                return new JsonPrimitive(unpacker.unpackLong());
+            case FLOAT:
+                return new JsonPrimitive(unpacker.unpackDouble());
+            case STRING:
+                return new JsonPrimitive(unpacker.unpackString());
+            case BINARY: {
+                int length = unpacker.unpackBinaryHeader();
+                return new JsonPrimitive(Base64.getEncoder().encodeToString(unpacker.readPayload(length)));
+            }
+            case ARRAY: {
+                int size = unpacker.unpackArrayHeader();
+                JsonArray array = new JsonArray(size);
+                for (int i = 0; i < size; i++) {
+                    array.add(unpackElement(unpacker));
+                }
+                return array;
+            }
+            case MAP: {
+                int size = unpacker.unpackMapHeader();
+                JsonObject object = new JsonObject();
+                for (int i = 0; i < size; i++) {
+                    JsonElement key = unpackElement(unpacker);
+                    object.add(key.isJsonPrimitive() ? key.getAsString() : key.toString(), unpackElement(unpacker));
+                }
+                return object;
+            }
+            default:
+                throw new JsonParseException("Unsupported MessagePack type: " + format.getValueType());
+        }
+    }
+}
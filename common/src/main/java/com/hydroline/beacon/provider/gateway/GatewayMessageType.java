@@ -5,6 +5,13 @@ public enum GatewayMessageType {
     HANDSHAKE_ACK("handshake_ack"),
     REQUEST("request"),
     RESPONSE("response"),
+    RESPONSE_CHUNK("response_chunk"),
+    RESPONSE_END("response_end"),
+    SUBSCRIBE("subscribe"),
+    UNSUBSCRIBE("unsubscribe"),
+    SUBSCRIBE_ACK("subscribe_ack"),
+    EVENT("event"),
+    EVENT_ACK("event_ack"),
     PING("ping"),
     PONG("pong"),
     ERROR("error");
@@ -0,0 +1,29 @@
+package com.hydroline.beacon.provider.gateway;
+
+/**
+ * What the gateway does with a request when the dispatch queue is full. Running the request on the Netty event loop
+ * is deliberately not offered: it would stall every other connection served by that loop.
+ */
+public enum GatewayRejectionPolicy {
+    /** Reply immediately with {@code BUSY} so the client can retry. */
+    BUSY("busy");
+
+    private final String wireName;
+
+    GatewayRejectionPolicy(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String wireName() {
+        return wireName;
+    }
+
+    public static GatewayRejectionPolicy fromWireName(String wireName) {
+        for (GatewayRejectionPolicy policy : values()) {
+            if (policy.wireName.equalsIgnoreCase(wireName)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown gateway rejection policy: " + wireName);
+    }
+}
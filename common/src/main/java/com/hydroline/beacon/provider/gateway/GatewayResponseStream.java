@@ -0,0 +1,109 @@
+package com.hydroline.beacon.provider.gateway;
+
+import com.google.gson.JsonObject;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Feeds response attachments to {@code ChunkedWriteHandler} as {@code response_chunk} frames followed by a single
+ * {@code response_end}; frames are only produced while the channel is writable, which gives us flow control.
+ * Attachments are read in place; only slices of buffers without a backing array (memory-mapped ones) are copied, one
+ * chunk at a time.
+ */
+final class GatewayResponseStream implements ChunkedInput<ByteBuf> {
+    private final GatewayConnection connection;
+    private final String requestId;
+    private final List<ByteBuffer> attachments;
+    private final int chunkBytes;
+    private final long totalBytes;
+
+    private int attachment;
+    private int offset;
+    private int chunkIndex;
+    private int chunksSent;
+    private long bytesSent;
+    private boolean endSent;
+
+    GatewayResponseStream(GatewayConnection connection, String requestId, List<ByteBuffer> attachments,
+                          int chunkBytes) {
+        this.connection = connection;
+        this.requestId = requestId;
+        this.attachments = attachments;
+        this.chunkBytes = chunkBytes;
+        long total = 0L;
+        for (ByteBuffer data : attachments) {
+            total += data.remaining();
+        }
+        this.totalBytes = total;
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return endSent;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Deprecated
+    @Override
+    public ByteBuf readChunk(ChannelHandlerContext ctx) {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public ByteBuf readChunk(ByteBufAllocator allocator) {
+        if (endSent) {
+            return null;
+        }
+        if (attachment >= attachments.size()) {
+            endSent = true;
+            JsonObject body = new JsonObject();
+            body.addProperty("requestId", requestId);
+            body.addProperty("attachments", attachments.size());
+            body.addProperty("chunks", chunksSent);
+            body.addProperty("bytes", bytesSent);
+            return connection.encode(allocator, GatewayMessageType.RESPONSE_END, body);
+        }
+        ByteBuffer data = attachments.get(attachment);
+        int length = Math.min(chunkBytes, data.remaining() - offset);
+        boolean last = offset + length >= data.remaining();
+        GatewayChunk chunk;
+        if (data.hasArray()) {
+            chunk = new GatewayChunk(requestId, attachment, chunkIndex, last, data.array(),
+                data.arrayOffset() + data.position() + offset, length);
+        } else {
+            byte[] slice = new byte[length];
+            ByteBuffer view = data.duplicate();
+            view.position(view.position() + offset);
+            view.get(slice);
+            chunk = new GatewayChunk(requestId, attachment, chunkIndex, last, slice, 0, length);
+        }
+        ByteBuf frame = connection.encodeChunk(allocator, chunk);
+        offset += length;
+        bytesSent += length;
+        chunkIndex++;
+        chunksSent++;
+        if (last) {
+            attachment++;
+            offset = 0;
+            chunkIndex = 0;
+        }
+        return frame;
+    }
+
+    @Override
+    public long length() {
+        return totalBytes;
+    }
+
+    @Override
+    public long progress() {
+        return bytesSent;
+    }
+}
@@ -1,34 +1,46 @@
 package com.hydroline.beacon.provider.gateway;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.hydroline.beacon.provider.BeaconProviderMod;
+import com.hydroline.beacon.provider.create.CreateQueryGateway;
+import com.hydroline.beacon.provider.create.CreateQueryRegistry;
+import com.hydroline.beacon.provider.create.CreateRealtimeFeed;
+import com.hydroline.beacon.provider.create.CreateRealtimeSnapshot;
 import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import com.hydroline.beacon.provider.protocol.ChannelConstants;
 import com.hydroline.beacon.provider.protocol.MessageSerializer;
+import com.hydroline.beacon.provider.protocol.RequestId;
 import com.hydroline.beacon.provider.protocol.ResultCode;
 import com.hydroline.beacon.provider.transport.BeaconRequestDispatcher;
 import com.hydroline.beacon.provider.transport.TransportContext;
 import com.hydroline.beacon.provider.transport.TransportKind;
+import com.hydroline.beacon.provider.util.NamedThreadFactory;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.handler.timeout.IdleStateHandler;
 import java.net.InetSocketAddress;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public final class GatewayServer implements AutoCloseable {
     private final GatewayConfig config;
@@ -36,6 +48,9 @@ public final class GatewayServer implements AutoCloseable {
 
     private NioEventLoopGroup bossGroup;
     private NioEventLoopGroup workerGroup;
+    private ThreadPoolExecutor dispatchExecutor;
+    private GatewaySubscriptions subscriptions;
+    private Consumer<CreateRealtimeSnapshot> realtimeListener;
     private Channel serverChannel;
 
     public GatewayServer(GatewayConfig config, BeaconRequestDispatcher dispatcher) {
@@ -53,6 +68,18 @@ public final class GatewayServer implements AutoCloseable {
         }
         bossGroup = new NioEventLoopGroup(1);
         workerGroup = new NioEventLoopGroup();
+        dispatchExecutor = new ThreadPoolExecutor(
+            config.dispatchThreads(),
+            config.dispatchThreads(),
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(config.dispatchQueueCapacity()),
+            new NamedThreadFactory("beacon-gateway-dispatch")
+        );
+        GatewaySubscriptions activeSubscriptions = new GatewaySubscriptions(dispatchExecutor);
+        subscriptions = activeSubscriptions;
+        realtimeListener = activeSubscriptions::publishCreateRealtime;
+        CreateRealtimeFeed.addListener(realtimeListener);
         ServerBootstrap bootstrap = new ServerBootstrap()
             .group(bossGroup, workerGroup)
             .channel(NioServerSocketChannel.class)
@@ -61,10 +88,10 @@ public final class GatewayServer implements AutoCloseable {
                 protected void initChannel(Channel ch) {
                     ChannelPipeline pipeline = ch.pipeline();
                     pipeline.addLast(new LengthFieldBasedFrameDecoder(1024 * 1024, 0, 4, 0, 4));
-                    pipeline.addLast(new LengthFieldPrepender(4));
                     if (config.idleTimeoutSeconds() > 0) {
                         pipeline.addLast(new IdleStateHandler(config.idleTimeoutSeconds(), 0, 0));
                     }
+                    pipeline.addLast(new ChunkedWriteHandler());
                     pipeline.addLast(new GatewayChannelHandler());
                 }
             })
@@ -74,11 +101,16 @@ public final class GatewayServer implements AutoCloseable {
         bound.syncUninterruptibly();
         serverChannel = bound.channel();
         BeaconProviderMod.LOGGER.info(
-            "Beacon Netty gateway listening on {}:{}", config.listenAddress(), config.listenPort());
+            "Beacon Netty gateway listening on {}:{} (dispatchThreads={}, dispatchQueueCapacity={})",
+            config.listenAddress(), config.listenPort(), config.dispatchThreads(), config.dispatchQueueCapacity());
     }
 
     @Override
     public synchronized void close() {
+        if (realtimeListener != null) {
+            CreateRealtimeFeed.removeListener(realtimeListener);
+            realtimeListener = null;
+        }
         if (serverChannel != null) {
             serverChannel.close().syncUninterruptibly();
             serverChannel = null;
@@ -91,6 +123,11 @@ public final class GatewayServer implements AutoCloseable {
             workerGroup.shutdownGracefully();
             workerGroup = null;
         }
+        if (dispatchExecutor != null) {
+            dispatchExecutor.shutdownNow();
+            dispatchExecutor = null;
+        }
+        subscriptions = null;
     }
 
     private final class GatewayChannelHandler extends SimpleChannelInboundHandler<ByteBuf> {
@@ -98,7 +135,7 @@ public final class GatewayServer implements AutoCloseable {
 
         @Override
         public void channelActive(io.netty.channel.ChannelHandlerContext ctx) {
-            this.connection = new GatewayConnection(ctx.channel());
+            this.connection = new GatewayConnection(ctx.channel(), config.maxInFlightPerConnection());
             if (config.handshakeTimeoutSeconds() > 0) {
                 connection.scheduleHandshakeTimeout(() -> {
                     if (!connection.handshakeComplete()) {
@@ -112,9 +149,11 @@ public final class GatewayServer implements AutoCloseable {
 
         @Override
         protected void channelRead0(io.netty.channel.ChannelHandlerContext ctx, ByteBuf msg) {
-            byte[] bytes = ByteBufUtil.getBytes(msg);
             try {
-                GatewayEnvelope envelope = GatewayCodec.decode(bytes);
+                ByteBuf frame = connection.compression() == GatewayCompression.NONE
+                    ? msg
+                    : GatewayFrameCompression.decode(msg);
+                GatewayEnvelope envelope = connection.codec().decode(frame);
                 handleEnvelope(ctx, connection, envelope);
             } catch (Exception ex) {
                 BeaconProviderMod.LOGGER.error("Failed to parse gateway message", ex);
@@ -141,6 +180,11 @@ public final class GatewayServer implements AutoCloseable {
         @Override
         public void channelInactive(io.netty.channel.ChannelHandlerContext ctx) {
             connection.cancelHandshakeTimeout();
+            connection.clearDeferredRequests();
+            GatewaySubscriptions current = subscriptions;
+            if (current != null) {
+                current.unsubscribeAll(connection);
+            }
         }
     }
 
@@ -152,6 +196,15 @@ public final class GatewayServer implements AutoCloseable {
             case REQUEST:
                 handleRequest(connection, envelope.body());
                 break;
+            case SUBSCRIBE:
+                handleSubscribe(connection, envelope.body(), true);
+                break;
+            case UNSUBSCRIBE:
+                handleSubscribe(connection, envelope.body(), false);
+                break;
+            case EVENT_ACK:
+                handleEventAck(connection, envelope.body());
+                break;
             case PING:
                 handlePing(connection, envelope.body());
                 break;
@@ -176,6 +229,14 @@ public final class GatewayServer implements AutoCloseable {
             sendErrorAndClose(connection, ResultCode.INVALID_PAYLOAD, "Unsupported protocol version");
             return;
         }
+        GatewayCodecType codec = GatewayCodecType.JSON;
+        if (body.has("codec") && body.get("codec").isJsonPrimitive()) {
+            GatewayCodecType requested = GatewayCodecType.fromWireName(body.get("codec").getAsString());
+            if (requested != null) {
+                codec = requested;
+            }
+        }
+        GatewayCompression compression = negotiateCompression(body);
         UUID connectionId = UUID.randomUUID();
         connection.markHandshakeComplete(connectionId);
         connection.cancelHandshakeTimeout();
@@ -185,8 +246,41 @@ public final class GatewayServer implements AutoCloseable {
         ack.addProperty("serverName", BeaconProviderMod.MOD_NAME);
         ack.addProperty("modVersion", BeaconProviderMod.getVersion());
         ack.addProperty("heartbeatIntervalSeconds", Math.max(5, config.idleTimeoutSeconds() / 2));
+        ack.addProperty("codec", codec.wireName());
+        ack.addProperty("compression", compression.wireName());
+        if (compression != GatewayCompression.NONE) {
+            ack.addProperty("compressionThreshold", config.compressionThresholdBytes());
+        }
         ack.addProperty("message", "ready");
         connection.send(GatewayMessageType.HANDSHAKE_ACK, ack);
+        connection.useCodec(codec);
+        connection.useCompression(compression, config.compressionThresholdBytes());
+    }
+
+    /**
+     * Accepts either a single algorithm name or a preference-ordered array and picks the first one we support.
+     */
+    private static GatewayCompression negotiateCompression(JsonObject body) {
+        if (!body.has("compression")) {
+            return GatewayCompression.NONE;
+        }
+        JsonElement requested = body.get("compression");
+        JsonArray candidates = new JsonArray();
+        if (requested.isJsonArray()) {
+            candidates = requested.getAsJsonArray();
+        } else if (requested.isJsonPrimitive()) {
+            candidates.add(requested);
+        }
+        for (JsonElement candidate : candidates) {
+            if (!candidate.isJsonPrimitive()) {
+                continue;
+            }
+            GatewayCompression compression = GatewayCompression.fromWireName(candidate.getAsString());
+            if (compression != null) {
+                return compression;
+            }
+        }
+        return GatewayCompression.NONE;
     }
 
     private void handleRequest(GatewayConnection connection, JsonObject body) {
@@ -195,11 +289,141 @@ public final class GatewayServer implements AutoCloseable {
             return;
         }
         JsonObject requestJson = body == null ? new JsonObject() : body;
-        byte[] requestBytes = requestJson.toString().getBytes(StandardCharsets.UTF_8);
         TransportContext context = new TransportContext(connection.connectionId(), TransportKind.NETTY_GATEWAY, Instant.now());
-        BeaconResponse response = dispatcher.dispatch(requestBytes, context);
+        Runnable submit = () -> submitRequest(connection, requestJson, context);
+        if (connection.tryAcquireSlot()) {
+            submit.run();
+        } else {
+            connection.deferRequest(submit);
+        }
+    }
+
+    /**
+     * Event loop only; the caller holds an in-flight slot which is released once the response has been handed off.
+     */
+    private void submitRequest(GatewayConnection connection, JsonObject requestJson, TransportContext context) {
+        Runnable task = () -> {
+            ChannelFuture streaming = null;
+            try {
+                streaming = executeRequest(connection, requestJson, context);
+            } finally {
+                if (streaming == null) {
+                    releaseSlot(connection);
+                } else {
+                    // a streamed response keeps its slot until the last chunk has been written
+                    streaming.addListener(future -> releaseSlot(connection));
+                }
+            }
+        };
+        ThreadPoolExecutor executor = dispatchExecutor;
+        try {
+            if (executor == null) {
+                throw new RejectedExecutionException("Gateway dispatch executor is not running");
+            }
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            BeaconProviderMod.LOGGER.warn("Gateway dispatch queue full, rejecting request from {}", connection.connectionId());
+            BeaconResponse busy = BeaconResponse.builder(extractRequestId(requestJson))
+                .result(ResultCode.BUSY)
+                .message("Gateway dispatch queue is full")
+                .build();
+            connection.send(GatewayMessageType.RESPONSE, MessageSerializer.serializeToJson(busy));
+            releaseSlot(connection);
+        }
+    }
+
+    private void releaseSlot(GatewayConnection connection) {
+        EventLoop eventLoop = connection.channel().eventLoop();
+        if (!eventLoop.inEventLoop()) {
+            try {
+                eventLoop.execute(() -> releaseSlot(connection));
+            } catch (RejectedExecutionException ignored) {
+                // event loop already shut down together with the connection
+            }
+            return;
+        }
+        Runnable next = connection.releaseSlot();
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * Runs on a dispatch thread; encoding happens here and the write is handed back to the connection's event loop.
+     * Returns the completion future of the chunk stream when the response carries attachments, otherwise {@code null}.
+     */
+    private ChannelFuture executeRequest(GatewayConnection connection, JsonObject requestJson, TransportContext context) {
+        BeaconResponse response;
+        try {
+            response = dispatcher.dispatch(MessageSerializer.deserialize(requestJson), context);
+        } catch (JsonParseException ex) {
+            response = dispatcher.invalidPayload(ex, context);
+        } catch (RuntimeException ex) {
+            response = dispatcher.invalidPayload(new JsonParseException(ex.getMessage(), ex), context);
+        }
+        if (!connection.channel().isActive()) {
+            return null;
+        }
         JsonObject responseJson = MessageSerializer.serializeToJson(response);
+        if (response.getAttachments().isEmpty()) {
+            connection.send(GatewayMessageType.RESPONSE, responseJson);
+            return null;
+        }
+        JsonObject stream = new JsonObject();
+        stream.addProperty("attachments", response.getAttachments().size());
+        stream.addProperty("chunkBytes", config.streamChunkBytes());
+        responseJson.add("stream", stream);
         connection.send(GatewayMessageType.RESPONSE, responseJson);
+        return connection.channel().writeAndFlush(
+            new GatewayResponseStream(connection, response.getRequestId(), response.getAttachments(), config.streamChunkBytes()));
+    }
+
+    private static String extractRequestId(JsonObject requestJson) {
+        if (requestJson.has("requestId") && requestJson.get("requestId").isJsonPrimitive()) {
+            String requestId = requestJson.get("requestId").getAsString();
+            if (RequestId.isValid(requestId)) {
+                return requestId;
+            }
+        }
+        return "invalid";
+    }
+
+    private void handleSubscribe(GatewayConnection connection, JsonObject body, boolean subscribe) {
+        if (!connection.handshakeComplete()) {
+            sendError(connection, ResultCode.INVALID_PAYLOAD, "Handshake required");
+            return;
+        }
+        GatewaySubscriptions current = subscriptions;
+        String topic = body.has("topic") && body.get("topic").isJsonPrimitive() ? body.get("topic").getAsString() : "";
+        if (current == null || !GatewaySubscriptions.isKnownTopic(topic)) {
+            sendError(connection, ResultCode.INVALID_PAYLOAD, "Unknown topic: " + topic);
+            return;
+        }
+        if (subscribe) {
+            current.subscribe(topic, connection, body);
+        } else {
+            current.unsubscribe(topic, connection);
+        }
+        JsonObject ack = new JsonObject();
+        ack.addProperty("topic", topic);
+        ack.addProperty("subscribed", subscribe);
+        connection.send(GatewayMessageType.SUBSCRIBE_ACK, ack);
+        if (subscribe) {
+            CreateQueryGateway create = CreateQueryRegistry.get();
+            if (create.isReady()) {
+                current.sendInitial(connection, create.fetchRealtimeSnapshot());
+            }
+        }
+    }
+
+    private void handleEventAck(GatewayConnection connection, JsonObject body) {
+        GatewaySubscriptions current = subscriptions;
+        if (!connection.handshakeComplete() || current == null) {
+            return;
+        }
+        if (body.has("topic") && body.has("capturedAt")) {
+            current.acknowledge(body.get("topic").getAsString(), connection, body.get("capturedAt").getAsLong());
+        }
     }
 
     private void handlePing(GatewayConnection connection, JsonObject body) {
@@ -213,16 +437,15 @@ public final class GatewayServer implements AutoCloseable {
         JsonObject body = new JsonObject();
         body.addProperty("errorCode", code.name());
         body.addProperty("message", message);
-        Channel channel = connection.channel();
-        channel.writeAndFlush(channel.alloc().buffer().writeBytes(
-            GatewayCodec.encode(GatewayMessageType.ERROR, connection.connectionId(), body)));
+        connection.send(GatewayMessageType.ERROR, body);
     }
 
     private void sendError(Channel channel, ResultCode code, String message) {
         JsonObject body = new JsonObject();
         body.addProperty("errorCode", code.name());
         body.addProperty("message", message);
-        channel.writeAndFlush(channel.alloc().buffer().writeBytes(GatewayCodec.encode(GatewayMessageType.ERROR, null, body)));
+        channel.writeAndFlush(GatewayFrameWriter.write(
+            channel.alloc(), GatewayCodecType.JSON, GatewayCompression.NONE, 0, GatewayMessageType.ERROR, null, body));
     }
 
     private void sendErrorAndClose(GatewayConnection connection, ResultCode code, String message) {
@@ -0,0 +1,204 @@
+package com.hydroline.beacon.provider.gateway;
+
+import com.google.gson.JsonObject;
+import com.hydroline.beacon.provider.BeaconProviderMod;
+import com.hydroline.beacon.provider.create.CreateRealtimeDeltaEncoder;
+import com.hydroline.beacon.provider.create.CreateRealtimeSnapshot;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Tracks which connections subscribed to which push topic and broadcasts new data to them. Each capture is turned
+ * into a JSON tree once and encoded once per frame format; subscribers receive retained duplicates of that frame.
+ * Delta subscribers sharing the same acknowledged base also share the delta body.
+ */
+final class GatewaySubscriptions {
+    static final String CREATE_REALTIME_TOPIC = "create:realtime";
+    /** 32 captures at the 500 ms capture rate covers roughly 16 seconds of acknowledgement lag. */
+    private static final int REALTIME_HISTORY_SIZE = 32;
+    private static final int DEFAULT_KEYFRAME_INTERVAL = 20;
+    private static final int MAX_KEYFRAME_INTERVAL = 600;
+
+    private final Map<GatewayConnection, RealtimeSubscriber> createRealtime = new ConcurrentHashMap<>();
+    private final CreateRealtimeDeltaEncoder realtimeHistory = new CreateRealtimeDeltaEncoder(REALTIME_HISTORY_SIZE);
+    private final Object realtimeLock = new Object();
+    private final Executor executor;
+
+    GatewaySubscriptions(Executor executor) {
+        this.executor = executor;
+    }
+
+    static boolean isKnownTopic(String topic) {
+        return CREATE_REALTIME_TOPIC.equals(topic);
+    }
+
+    /**
+     * Registers {@code connection}; {@code options} may request {@code mode = "delta"} and a {@code keyframeInterval}.
+     */
+    void subscribe(String topic, GatewayConnection connection, JsonObject options) {
+        if (!CREATE_REALTIME_TOPIC.equals(topic)) {
+            return;
+        }
+        boolean delta = options.has("mode") && "delta".equalsIgnoreCase(options.get("mode").getAsString());
+        int keyframeInterval = options.has("keyframeInterval")
+            ? Math.max(1, Math.min(MAX_KEYFRAME_INTERVAL, options.get("keyframeInterval").getAsInt()))
+            : DEFAULT_KEYFRAME_INTERVAL;
+        createRealtime.put(connection, new RealtimeSubscriber(delta, keyframeInterval));
+    }
+
+    boolean unsubscribe(String topic, GatewayConnection connection) {
+        return CREATE_REALTIME_TOPIC.equals(topic) && createRealtime.remove(connection) != null;
+    }
+
+    void unsubscribeAll(GatewayConnection connection) {
+        createRealtime.remove(connection);
+    }
+
+    /**
+     * Records the newest capture the client has applied; later deltas are computed against it.
+     */
+    void acknowledge(String topic, GatewayConnection connection, long capturedAt) {
+        if (!CREATE_REALTIME_TOPIC.equals(topic)) {
+            return;
+        }
+        RealtimeSubscriber subscriber = createRealtime.get(connection);
+        if (subscriber != null && capturedAt > subscriber.ackedCapturedAt) {
+            subscriber.ackedCapturedAt = capturedAt;
+        }
+    }
+
+    /**
+     * Called on the server thread by {@code CreateRealtimeFeed}; serialization happens on the dispatch pool.
+     */
+    void publishCreateRealtime(CreateRealtimeSnapshot snapshot) {
+        if (createRealtime.isEmpty()) {
+            return;
+        }
+        try {
+            executor.execute(() -> broadcastCreateRealtime(snapshot));
+        } catch (RejectedExecutionException ex) {
+            BeaconProviderMod.LOGGER.debug("Dropping Create realtime push, dispatch queue is full");
+        }
+    }
+
+    /**
+     * Sends the latest capture as a full frame to a connection that just subscribed so it does not wait for the
+     * next capture.
+     */
+    void sendInitial(GatewayConnection connection, CreateRealtimeSnapshot snapshot) {
+        if (snapshot == null || snapshot.getCapturedAt() <= 0L) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                synchronized (realtimeLock) {
+                    RealtimeSubscriber subscriber = createRealtime.get(connection);
+                    if (subscriber == null) {
+                        return;
+                    }
+                    CreateRealtimeDeltaEncoder.Capture capture = realtimeHistory.record(snapshot);
+                    subscriber.sinceKeyframe = 0;
+                    connection.send(GatewayMessageType.EVENT,
+                        realtimeEvent(capture, subscriber.delta ? "keyframe" : "full", capture.getKeyframe()));
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            BeaconProviderMod.LOGGER.debug("Skipping initial Create realtime push, dispatch queue is full");
+        }
+    }
+
+    private void broadcastCreateRealtime(CreateRealtimeSnapshot snapshot) {
+        Map<String, JsonObject> bodies = new HashMap<>();
+        Map<String, ByteBuf> frames = new HashMap<>();
+        synchronized (realtimeLock) {
+            CreateRealtimeDeltaEncoder.Capture capture = realtimeHistory.record(snapshot);
+            try {
+                for (Map.Entry<GatewayConnection, RealtimeSubscriber> entry : createRealtime.entrySet()) {
+                    GatewayConnection connection = entry.getKey();
+                    RealtimeSubscriber subscriber = entry.getValue();
+                    Channel channel = connection.channel();
+                    if (!channel.isActive()) {
+                        createRealtime.remove(connection);
+                        continue;
+                    }
+                    if (!channel.isWritable()) {
+                        // realtime data is superseded by the next capture, so slow readers simply skip this one
+                        continue;
+                    }
+                    String bodyKey = selectBody(capture, subscriber, bodies);
+                    String frameKey = bodyKey + '|' + connection.frameFormat();
+                    ByteBuf frame = frames.get(frameKey);
+                    if (frame == null) {
+                        frame = connection.encodeShared(channel.alloc(), GatewayMessageType.EVENT, bodies.get(bodyKey));
+                        frames.put(frameKey, frame);
+                    }
+                    channel.writeAndFlush(frame.retainedDuplicate());
+                }
+            } catch (RuntimeException ex) {
+                BeaconProviderMod.LOGGER.warn("Failed to push {} event", CREATE_REALTIME_TOPIC, ex);
+            } finally {
+                for (ByteBuf frame : frames.values()) {
+                    frame.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks (and builds on first use) the event body for {@code subscriber}, returning its key in {@code bodies}.
+     */
+    private String selectBody(CreateRealtimeDeltaEncoder.Capture capture, RealtimeSubscriber subscriber, Map<String, JsonObject> bodies) {
+        if (!subscriber.delta) {
+            if (!bodies.containsKey("full")) {
+                bodies.put("full", realtimeEvent(capture, "full", capture.getKeyframe()));
+            }
+            return "full";
+        }
+        long base = subscriber.ackedCapturedAt;
+        if (subscriber.sinceKeyframe < subscriber.keyframeInterval && base > 0L) {
+            String key = "delta:" + base;
+            if (!bodies.containsKey(key)) {
+                JsonObject delta = realtimeHistory.delta(base, capture);
+                bodies.put(key, delta == null ? null : realtimeEvent(capture, "delta", delta));
+            }
+            if (bodies.get(key) != null) {
+                subscriber.sinceKeyframe++;
+                return key;
+            }
+        }
+        if (!bodies.containsKey("keyframe")) {
+            bodies.put("keyframe", realtimeEvent(capture, "keyframe", capture.getKeyframe()));
+        }
+        subscriber.sinceKeyframe = 0;
+        return "keyframe";
+    }
+
+    private static JsonObject realtimeEvent(CreateRealtimeDeltaEncoder.Capture capture, String mode, JsonObject payload) {
+        JsonObject body = new JsonObject();
+        body.addProperty("topic", CREATE_REALTIME_TOPIC);
+        body.addProperty("mode", mode);
+        body.addProperty("capturedAt", capture.getCapturedAt());
+        if (payload.has("baseCapturedAt")) {
+            body.add("baseCapturedAt", payload.get("baseCapturedAt"));
+        }
+        body.add("payload", payload);
+        return body;
+    }
+
+    private static final class RealtimeSubscriber {
+        private final boolean delta;
+        private final int keyframeInterval;
+        private volatile long ackedCapturedAt;
+        private int sinceKeyframe;
+
+        private RealtimeSubscriber(boolean delta, int keyframeInterval) {
+            this.delta = delta;
+            this.keyframeInterval = keyframeInterval;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.hydroline.beacon.provider.mtr;
+
+import com.hydroline.beacon.provider.mtr.MtrModels.DepotInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.DimensionOverview;
+import com.hydroline.beacon.provider.mtr.MtrModels.FareAreaInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.NodeInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.NodePage;
+import com.hydroline.beacon.provider.mtr.MtrModels.PlatformTimetable;
+import com.hydroline.beacon.provider.mtr.MtrModels.RouteDetail;
+import com.hydroline.beacon.provider.mtr.MtrModels.StationInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.StationTimetable;
+import com.hydroline.beacon.provider.mtr.MtrModels.TrainStatus;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Answers {@link MtrQueryGateway} queries from a {@link MtrPublishedModel}. {@link #pinned()} returns a view fixed on
+ * the model current at the call, so a group of queries sees one consistent version.
+ */
+abstract class ModelMtrQueryGateway implements MtrQueryGateway {
+    /**
+     * @return the model queries are answered from; never {@code null}.
+     */
+    protected abstract MtrPublishedModel model();
+
+    @Override
+    public MtrQueryGateway pinned() {
+        return new Pinned(model());
+    }
+
+    @Override
+    public boolean isReady() {
+        return !model().isEmpty();
+    }
+
+    @Override
+    public List<DimensionOverview> fetchNetworkOverview() {
+        List<DimensionOverview> overviews = new ArrayList<>();
+        for (MtrPublishedModel.Dimension dimension : model().getDimensions()) {
+            if (dimension.getOverview() != null) {
+                overviews.add(dimension.getOverview());
+            }
+        }
+        return overviews;
+    }
+
+    @Override
+    public Optional<RouteDetail> fetchRouteDetail(String dimensionId, long routeId) {
+        MtrPublishedModel.Dimension dimension = model().dimension(dimensionId);
+        return dimension == null ? Optional.empty() : Optional.ofNullable(dimension.getRoutes().get(routeId));
+    }
+
+    @Override
+    public List<DepotInfo> fetchDepots(String dimensionId) {
+        return collect(dimensionId, MtrPublishedModel.Dimension::getDepots);
+    }
+
+    @Override
+    public List<FareAreaInfo> fetchFareAreas(String dimensionId) {
+        MtrPublishedModel.Dimension dimension = model().dimension(dimensionId);
+        return dimension == null ? Collections.emptyList() : dimension.getFareAreas();
+    }
+
+    @Override
+    public NodePage fetchNodes(String dimensionId, String cursor, int limit) {
+        MtrPublishedModel.Dimension dimension = model().dimension(dimensionId);
+        if (dimension == null) {
+            return new NodePage(dimensionId == null ? "" : dimensionId, Collections.emptyList(), null);
+        }
+        List<NodeInfo> nodes = dimension.getNodes();
+        int offset = parseCursor(cursor);
+        if (offset >= nodes.size()) {
+            return new NodePage(dimension.getDimensionId(), Collections.emptyList(), null);
+        }
+        int end = (int) Math.min(nodes.size(), (long) offset + Math.max(1, limit));
+        String nextCursor = end < nodes.size() ? Integer.toString(end) : null;
+        return new NodePage(dimension.getDimensionId(), nodes.subList(offset, end), nextCursor);
+    }
+
+    @Override
+    public Optional<StationTimetable> fetchStationTimetable(String dimensionId, long stationId, Long platformId) {
+        MtrPublishedModel.Dimension dimension = model().dimension(dimensionId);
+        StationTimetable timetable = dimension == null ? null : dimension.getTimetables().get(stationId);
+        if (timetable == null || platformId == null) {
+            return Optional.ofNullable(timetable);
+        }
+        List<PlatformTimetable> platforms = timetable.getPlatforms().stream()
+            .filter(platform -> platform.getPlatformId() == platformId)
+            .collect(Collectors.toList());
+        if (platforms.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new StationTimetable(timetable.getDimensionId(), stationId, platforms));
+    }
+
+    @Override
+    public List<StationInfo> fetchStations(String dimensionId) {
+        return collect(dimensionId, MtrPublishedModel.Dimension::getStations);
+    }
+
+    @Override
+    public List<TrainStatus> fetchRouteTrains(String dimensionId, long routeId) {
+        List<TrainStatus> trains = collect(dimensionId, MtrPublishedModel.Dimension::getTrains);
+        if (routeId == 0) {
+            return trains;
+        }
+        return trains.stream()
+            .filter(status -> status.getRouteId() == routeId)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<TrainStatus> fetchDepotTrains(String dimensionId, long depotId) {
+        MtrPublishedModel.Dimension dimension = model().dimension(dimensionId);
+        if (dimension == null) {
+            return Collections.emptyList();
+        }
+        if (depotId == 0) {
+            return dimension.getTrains();
+        }
+        return dimension.getTrains().stream()
+            .filter(status -> status.getDepotId().map(id -> id == depotId).orElse(false))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<MtrDimensionSnapshot> fetchSnapshots() {
+        return model().getSnapshots();
+    }
+
+    @Override
+    public long dataVersion() {
+        return model().getVersion();
+    }
+
+    @Override
+    public long railwayVersion() {
+        return model().getRailwayVersion();
+    }
+
+    @Override
+    public List<PackedRailwayData> fetchRailwayData() {
+        List<PackedRailwayData> packed = new ArrayList<>();
+        for (MtrPublishedModel.Dimension dimension : model().getDimensions()) {
+            if (dimension.getPacked() != null) {
+                packed.add(dimension.getPacked());
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * @return the values of one dimension, or of every dimension in capture order when {@code dimensionId} is empty.
+     */
+    private <T> List<T> collect(String dimensionId, Function<MtrPublishedModel.Dimension, List<T>> values) {
+        MtrPublishedModel model = model();
+        if (dimensionId != null && !dimensionId.isEmpty()) {
+            MtrPublishedModel.Dimension dimension = model.dimension(dimensionId);
+            return dimension == null ? Collections.emptyList() : values.apply(dimension);
+        }
+        List<T> results = new ArrayList<>();
+        for (MtrPublishedModel.Dimension dimension : model.getDimensions()) {
+            results.addAll(values.apply(dimension));
+        }
+        return results;
+    }
+
+    private static int parseCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(cursor));
+        } catch (NumberFormatException ignored) {
+            return 0;
+        }
+    }
+
+    private static final class Pinned extends ModelMtrQueryGateway {
+        private final MtrPublishedModel model;
+
+        private Pinned(MtrPublishedModel model) {
+            this.model = model;
+        }
+
+        @Override
+        protected MtrPublishedModel model() {
+            return model;
+        }
+
+        @Override
+        public MtrQueryGateway pinned() {
+            return this;
+        }
+    }
+}
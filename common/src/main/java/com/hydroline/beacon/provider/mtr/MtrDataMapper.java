@@ -505,6 +505,18 @@ public final class MtrDataMapper {
         return nodes;
     }
 
+    /**
+     * Falls back to the station of the route's last platform when the route has no destination for the index.
+     */
+    private static String resolveDestination(DimensionContext context, Route route, int currentStationIndex) {
+        String destination = nullIfEmpty(route.getDestination(currentStationIndex));
+        if (destination != null || route.getLastPlatformId() == 0L) {
+            return destination;
+        }
+        Station station = context.platformToStation.get(route.getLastPlatformId());
+        return station == null ? null : nullIfEmpty(safeName(station.name));
+    }
+
     private static List<ScheduleEntry> toScheduleEntries(DimensionContext context, List<mtr.data.ScheduleEntry> entries) {
         if (entries == null || entries.isEmpty()) {
             return Collections.emptyList();
@@ -514,7 +526,7 @@ public final class MtrDataMapper {
             .map(entry -> {
                 Route route = context.routeIdMap.get(entry.routeId);
                 String routeName = route != null ? nullIfEmpty(safeName(route.name)) : null;
-                String destination = route != null ? nullIfEmpty(route.getDestination(entry.currentStationIndex)) : null;
+                String destination = route != null ? resolveDestination(context, route, entry.currentStationIndex) : null;
                 String routeLabel = route != null && route.isLightRailRoute
                     ? nullIfEmpty(route.lightRailRouteNumber)
                     : null;
@@ -830,10 +842,17 @@ public final class MtrDataMapper {
             this.routeIdMap = buildRouteIdMap(routes);
         }
 
+        /**
+         * The context is built once per captured snapshot and shared by every mapper call on it.
+         */
         static DimensionContext from(MtrDimensionSnapshot snapshot) {
             if (snapshot == null) {
                 return null;
             }
+            return snapshot.memoize(DimensionContext.class, () -> create(snapshot));
+        }
+
+        private static DimensionContext create(MtrDimensionSnapshot snapshot) {
             try {
                 DataCache cache = snapshot.refreshAndGetCache();
                 if (cache == null) {
@@ -1,6 +1,7 @@
 package com.hydroline.beacon.provider.mtr;
 
 import java.util.Objects;
+import java.util.function.Supplier;
 import mtr.data.DataCache;
 import mtr.data.RailwayData;
 
@@ -10,6 +11,7 @@ import mtr.data.RailwayData;
 public final class MtrDimensionSnapshot {
     private final String dimensionId;
     private final RailwayData railwayData;
+    private volatile Object derivedIndex;
 
     public MtrDimensionSnapshot(String dimensionId, RailwayData railwayData) {
         this.dimensionId = Objects.requireNonNull(dimensionId, "dimensionId");
@@ -33,4 +35,27 @@ public final class MtrDimensionSnapshot {
         DataCache cache = railwayData.dataCache;
         return cache;
     }
+
+    /**
+     * Returns the lookup index derived from this snapshot, building it on first use. Snapshots are recaptured by
+     * {@link MtrSnapshotEngine}, so the index lives exactly as long as the captured version. A {@code null} result is
+     * not remembered.
+     */
+    <T> T memoize(Class<T> type, Supplier<T> factory) {
+        Object current = derivedIndex;
+        if (type.isInstance(current)) {
+            return type.cast(current);
+        }
+        synchronized (this) {
+            current = derivedIndex;
+            if (type.isInstance(current)) {
+                return type.cast(current);
+            }
+            T created = factory.get();
+            if (created != null) {
+                derivedIndex = created;
+            }
+            return created;
+        }
+    }
 }
@@ -0,0 +1,176 @@
+package com.hydroline.beacon.provider.mtr;
+
+import com.hydroline.beacon.provider.mtr.MtrModels.DepotInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.DimensionOverview;
+import com.hydroline.beacon.provider.mtr.MtrModels.FareAreaInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.NodeInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.RouteDetail;
+import com.hydroline.beacon.provider.mtr.MtrModels.StationInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.StationTimetable;
+import com.hydroline.beacon.provider.mtr.MtrModels.TrainStatus;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable copy of every MTR query result, captured on the server thread by {@link MtrSnapshotEngine} and published
+ * as a whole. Readers on any thread see one consistent version without locking.
+ */
+public final class MtrPublishedModel {
+    public static final MtrPublishedModel EMPTY = new MtrPublishedModel(0L, 0L, 0L,
+        Collections.emptyList(), Collections.emptyList());
+
+    private final long version;
+    private final long railwayVersion;
+    private final long capturedAt;
+    private final List<MtrDimensionSnapshot> snapshots;
+    private final Map<String, Dimension> dimensions;
+
+    MtrPublishedModel(long version, long railwayVersion, long capturedAt, List<MtrDimensionSnapshot> snapshots,
+                      List<Dimension> dimensions) {
+        this.version = version;
+        this.railwayVersion = railwayVersion;
+        this.capturedAt = capturedAt;
+        this.snapshots = Collections.unmodifiableList(new ArrayList<>(snapshots));
+        Map<String, Dimension> byId = new LinkedHashMap<>();
+        for (Dimension dimension : dimensions) {
+            byId.put(dimension.getDimensionId(), dimension);
+        }
+        this.dimensions = Collections.unmodifiableMap(byId);
+    }
+
+    /**
+     * @return publish counter, incremented for every model the engine swaps in.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the {@link #getVersion() version} of the first model with the current {@link Dimension#getPacked()
+     *     packed RailwayData}; unlike the publish counter it stays put while only trains and timetables move.
+     */
+    public long getRailwayVersion() {
+        return railwayVersion;
+    }
+
+    public long getCapturedAt() {
+        return capturedAt;
+    }
+
+    /**
+     * @return the dimension snapshots this model was captured from, for their dimension ids. Their RailwayData is the
+     * live, unsynchronized instance and must only be read on the server thread; queries use the captured data instead.
+     */
+    public List<MtrDimensionSnapshot> getSnapshots() {
+        return snapshots;
+    }
+
+    public List<Dimension> getDimensions() {
+        return new ArrayList<>(dimensions.values());
+    }
+
+    /**
+     * @return the captured dimension, or {@code null} if it is unknown or {@code dimensionId} is empty.
+     */
+    public Dimension dimension(String dimensionId) {
+        if (dimensionId == null || dimensionId.isEmpty()) {
+            return null;
+        }
+        return dimensions.get(dimensionId);
+    }
+
+    public boolean isEmpty() {
+        return dimensions.isEmpty();
+    }
+
+    public static final class Dimension {
+        private final String dimensionId;
+        private final DimensionOverview overview;
+        private final List<StationInfo> stations;
+        private final List<DepotInfo> depots;
+        private final List<FareAreaInfo> fareAreas;
+        private final Map<Long, RouteDetail> routes;
+        private final List<NodeInfo> nodes;
+        private final List<TrainStatus> trains;
+        private final Map<Long, StationTimetable> timetables;
+        private final PackedRailwayData packed;
+        private final long packedAt;
+
+        Dimension(String dimensionId, DimensionOverview overview, List<StationInfo> stations,
+                  List<DepotInfo> depots, List<FareAreaInfo> fareAreas, Map<Long, RouteDetail> routes,
+                  List<NodeInfo> nodes, List<TrainStatus> trains, Map<Long, StationTimetable> timetables,
+                  PackedRailwayData packed, long packedAt) {
+            this.dimensionId = Objects.requireNonNull(dimensionId, "dimensionId");
+            this.overview = overview;
+            this.stations = Collections.unmodifiableList(new ArrayList<>(stations));
+            this.depots = Collections.unmodifiableList(new ArrayList<>(depots));
+            this.fareAreas = Collections.unmodifiableList(new ArrayList<>(fareAreas));
+            this.routes = Collections.unmodifiableMap(new LinkedHashMap<>(routes));
+            this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+            this.trains = Collections.unmodifiableList(new ArrayList<>(trains));
+            this.timetables = Collections.unmodifiableMap(new LinkedHashMap<>(timetables));
+            this.packed = packed;
+            this.packedAt = packedAt;
+        }
+
+        public String getDimensionId() {
+            return dimensionId;
+        }
+
+        /**
+         * @return the overview, or {@code null} if the dimension's RailwayData could not be indexed.
+         */
+        public DimensionOverview getOverview() {
+            return overview;
+        }
+
+        public List<StationInfo> getStations() {
+            return stations;
+        }
+
+        public List<DepotInfo> getDepots() {
+            return depots;
+        }
+
+        public List<FareAreaInfo> getFareAreas() {
+            return fareAreas;
+        }
+
+        public Map<Long, RouteDetail> getRoutes() {
+            return routes;
+        }
+
+        public List<NodeInfo> getNodes() {
+            return nodes;
+        }
+
+        public List<TrainStatus> getTrains() {
+            return trains;
+        }
+
+        /**
+         * @return station id to its full timetable; stations without schedules are absent.
+         */
+        public Map<Long, StationTimetable> getTimetables() {
+            return timetables;
+        }
+
+        /**
+         * @return the dimension's RailwayData packed on the server thread, or {@code null} if packing failed.
+         */
+        public PackedRailwayData getPacked() {
+            return packed;
+        }
+
+        /**
+         * @return when {@link #getPacked()} was packed; it may predate {@link MtrPublishedModel#getCapturedAt()}.
+         */
+        public long getPackedAt() {
+            return packedAt;
+        }
+    }
+}
@@ -45,10 +45,43 @@ public interface MtrQueryGateway {
 
     List<TrainStatus> fetchDepotTrains(String dimensionId, long depotId);
 
+    /**
+     * @return the captured dimensions; their RailwayData is live and may only be read on the server thread.
+     */
     default List<MtrDimensionSnapshot> fetchSnapshots() {
         return Collections.emptyList();
     }
 
+    /**
+     * @return a counter that changes whenever the underlying snapshots are invalidated or replaced.
+     */
+    default long dataVersion() {
+        return 0L;
+    }
+
+    /**
+     * @return a counter that changes only when the packed RailwayData ({@link #fetchRailwayData()}) does, for the
+     *     railway snapshot, which does not follow every train movement.
+     */
+    default long railwayVersion() {
+        return dataVersion();
+    }
+
+    /**
+     * @return every dimension's RailwayData as packed on the server thread; safe to read from any thread.
+     */
+    default List<PackedRailwayData> fetchRailwayData() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return a gateway that keeps answering from the data current at this call, for requests that must read one
+     *     consistent version across several queries. Gateways without versioned data return themselves.
+     */
+    default MtrQueryGateway pinned() {
+        return this;
+    }
+
     MtrQueryGateway UNAVAILABLE = new MtrQueryGateway() {
         @Override
         public boolean isReady() {
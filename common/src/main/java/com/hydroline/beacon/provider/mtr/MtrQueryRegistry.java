@@ -2,23 +2,46 @@ package com.hydroline.beacon.provider.mtr;
 
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * Global registry so loader-specific entrypoints can provide an {@link MtrQueryGateway}
- * implementation that will be consumed by the cross-loader action handlers.
+ * implementation that will be consumed by the cross-loader action handlers. A thread may temporarily override the
+ * gateway it sees with {@link #withGateway}, e.g. to run several actions against one {@link MtrQueryGateway#pinned()}
+ * view.
  */
 public final class MtrQueryRegistry {
     private static final AtomicReference<MtrQueryGateway> GATEWAY = new AtomicReference<>(MtrQueryGateway.UNAVAILABLE);
+    private static final ThreadLocal<MtrQueryGateway> OVERRIDE = new ThreadLocal<>();
 
     private MtrQueryRegistry() {
     }
 
     public static MtrQueryGateway get() {
-        return GATEWAY.get();
+        MtrQueryGateway override = OVERRIDE.get();
+        return override != null ? override : GATEWAY.get();
     }
 
     public static void register(MtrQueryGateway gateway) {
         Objects.requireNonNull(gateway, "gateway");
         GATEWAY.set(gateway);
     }
+
+    /**
+     * Runs {@code action} with {@link #get()} returning {@code gateway} on the current thread.
+     */
+    public static <T> T withGateway(MtrQueryGateway gateway, Supplier<T> action) {
+        Objects.requireNonNull(gateway, "gateway");
+        MtrQueryGateway previous = OVERRIDE.get();
+        OVERRIDE.set(gateway);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                OVERRIDE.remove();
+            } else {
+                OVERRIDE.set(previous);
+            }
+        }
+    }
 }
@@ -0,0 +1,417 @@
+package com.hydroline.beacon.provider.mtr;
+
+import com.hydroline.beacon.provider.mtr.MtrModels.DepotInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.DimensionOverview;
+import com.hydroline.beacon.provider.mtr.MtrModels.FareAreaInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.NodeInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.RouteDetail;
+import com.hydroline.beacon.provider.mtr.MtrModels.RouteSummary;
+import com.hydroline.beacon.provider.mtr.MtrModels.StationInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.StationTimetable;
+import com.hydroline.beacon.provider.mtr.MtrModels.TrainStatus;
+import com.hydroline.beacon.provider.service.BeaconMetrics;
+import com.hydroline.beacon.provider.service.TickBudget;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import mtr.data.NameColorDataBase;
+import mtr.data.RailwayData;
+import mtr.data.Route;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies MTR data into an immutable {@link MtrPublishedModel} from the server tick and publishes it atomically.
+ * A capture starts every {@code beacon.mtrPublishIntervalTicks} ticks and advances in small steps (a phase of one
+ * dimension, or a chunk of its routes or stations) until {@code beacon.mtrCaptureBudgetMs} is spent, resuming on the
+ * next tick; queries keep reading the previous model meanwhile. Because a capture spans ticks, each dimension's
+ * network structure is fingerprinted before and after; a dimension edited in between is captured again. A dimension
+ * whose capture fails, or that is still changing after {@code MAX_RESTARTS} attempts, keeps its previously published
+ * model. The RailwayData itself is packed into the model as well ({@link PackedRailwayData}), at most every
+ * {@code beacon.mtrPackIntervalMs} while the structure is unchanged, so nothing outside the server thread reads it.
+ */
+public final class MtrSnapshotEngine {
+    static final String METRIC_PREFIX = "capture.mtr";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MtrSnapshotEngine.class);
+    private static final int DEFAULT_INTERVAL_TICKS = Integer.getInteger("beacon.mtrPublishIntervalTicks", 20);
+    private static final long DEFAULT_BUDGET_MILLIS = Long.getLong("beacon.mtrCaptureBudgetMs", 5L);
+    private static final int ROUTES_PER_STEP = 16;
+    private static final int STATIONS_PER_STEP = 16;
+    private static final int MAX_RESTARTS = 3;
+    private static final int PACKED_ELEMENTS_PER_STEP = 128;
+    private static final long PACK_INTERVAL_MILLIS = Long.getLong("beacon.mtrPackIntervalMs", 5000L);
+
+    private final Supplier<List<MtrDimensionSnapshot>> source;
+    private final int intervalTicks;
+    private final TickBudget budget;
+    private final AtomicReference<MtrPublishedModel> published = new AtomicReference<>(MtrPublishedModel.EMPTY);
+    private volatile boolean invalidated;
+
+    // only touched from the server thread
+    private Capture capture;
+    private int ticksUntilCapture;
+    private Map<String, Long> publishedFingerprints = Collections.emptyMap();
+
+    public MtrSnapshotEngine(Supplier<List<MtrDimensionSnapshot>> source) {
+        this(source, DEFAULT_INTERVAL_TICKS, DEFAULT_BUDGET_MILLIS);
+    }
+
+    public MtrSnapshotEngine(Supplier<List<MtrDimensionSnapshot>> source, int intervalTicks, long budgetMillis) {
+        this.source = Objects.requireNonNull(source, "source");
+        this.intervalTicks = Math.max(1, intervalTicks);
+        this.budget = new TickBudget(METRIC_PREFIX, budgetMillis);
+    }
+
+    /**
+     * @return the latest complete model; never {@code null}.
+     */
+    public MtrPublishedModel current() {
+        return published.get();
+    }
+
+    /**
+     * Forces a fresh capture on the next tick, abandoning one that is in progress. The current model stays
+     * published until the new one completes.
+     */
+    public void invalidate() {
+        invalidated = true;
+    }
+
+    /**
+     * Advances the capture; must be called on the server thread once per tick.
+     */
+    public void tick() {
+        if (invalidated) {
+            invalidated = false;
+            capture = null;
+            ticksUntilCapture = 0;
+        }
+        if (capture == null) {
+            if (ticksUntilCapture > 0) {
+                ticksUntilCapture--;
+                return;
+            }
+            ticksUntilCapture = intervalTicks - 1;
+            capture = new Capture(source.get(), published.get(), publishedFingerprints);
+        }
+        capture.ticks++;
+        boolean finished = budget.run(capture::step);
+        BeaconMetrics.setGauge(budget.metric("remainingDimensions"), capture.remainingDimensions());
+        if (finished) {
+            publish(capture);
+            capture = null;
+        }
+    }
+
+    private void publish(Capture completed) {
+        MtrPublishedModel previous = published.get();
+        long version = previous.getVersion() + 1L;
+        List<MtrPublishedModel.Dimension> results = completed.results(previous);
+        // the publish counter moves every interval; the railway version only when the packed RailwayData changed
+        long railwayVersion = previous == MtrPublishedModel.EMPTY
+            || !packedContent(results).equals(packedContent(previous.getDimensions()))
+            ? version
+            : previous.getRailwayVersion();
+        publishedFingerprints = completed.fingerprints(publishedFingerprints);
+        published.set(new MtrPublishedModel(version, railwayVersion, completed.startedAt,
+            completed.snapshots(), results));
+        BeaconMetrics.increment(budget.metric("published"));
+        BeaconMetrics.setGauge(budget.metric("lastCaptureTicks"), completed.ticks);
+        BeaconMetrics.setGauge(budget.metric("lastCaptureMillis"), System.currentTimeMillis() - completed.startedAt);
+    }
+
+    private static Map<String, String> packedContent(List<MtrPublishedModel.Dimension> dimensions) {
+        Map<String, String> content = new LinkedHashMap<>();
+        for (MtrPublishedModel.Dimension dimension : dimensions) {
+            PackedRailwayData packed = dimension.getPacked();
+            content.put(dimension.getDimensionId(), packed == null ? "" : packed.getContentHash());
+        }
+        return content;
+    }
+
+    /**
+     * Order-independent digest of the ids making up a dimension's network, cheap enough to take on every verify.
+     */
+    static long structureFingerprint(RailwayData data) {
+        long fingerprint = 17L;
+        fingerprint = fingerprint * 31L + digest(data.stations);
+        fingerprint = fingerprint * 31L + digest(data.platforms);
+        fingerprint = fingerprint * 31L + digest(data.sidings);
+        fingerprint = fingerprint * 31L + digest(data.depots);
+        fingerprint = fingerprint * 31L + digest(data.routes);
+        for (Route route : data.routes) {
+            fingerprint += route.id * 0x9E3779B97F4A7C15L ^ route.platformIds.size();
+        }
+        return fingerprint;
+    }
+
+    private static long digest(Collection<? extends NameColorDataBase> values) {
+        long sum = values.size();
+        for (NameColorDataBase value : values) {
+            long mixed = value.id * 0x9E3779B97F4A7C15L;
+            sum += mixed ^ (mixed >>> 29);
+        }
+        return sum;
+    }
+
+    /**
+     * One in-flight capture over the dimensions enumerated when it started.
+     */
+    private static final class Capture {
+        private final long startedAt = System.currentTimeMillis();
+        private final List<DimensionCapture> dimensions = new ArrayList<>();
+        private int current;
+        private int ticks;
+
+        private Capture(List<MtrDimensionSnapshot> snapshots, MtrPublishedModel previous,
+                Map<String, Long> previousFingerprints) {
+            if (snapshots != null) {
+                for (MtrDimensionSnapshot snapshot : snapshots) {
+                    dimensions.add(new DimensionCapture(snapshot, previous.dimension(snapshot.getDimensionId()),
+                        previousFingerprints.get(snapshot.getDimensionId())));
+                }
+            }
+        }
+
+        /**
+         * @return {@code true} while work remains.
+         */
+        private boolean step() {
+            if (current >= dimensions.size()) {
+                return false;
+            }
+            DimensionCapture dimension = dimensions.get(current);
+            try {
+                if (!dimension.step()) {
+                    current++;
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.warn("MTR capture failed for {}; keeping its previous model",
+                    dimension.snapshot.getDimensionId(), ex);
+                BeaconMetrics.increment(METRIC_PREFIX + ".failed");
+                dimension.failed = true;
+                current++;
+            }
+            return current < dimensions.size();
+        }
+
+        private int remainingDimensions() {
+            return dimensions.size() - current;
+        }
+
+        private List<MtrDimensionSnapshot> snapshots() {
+            List<MtrDimensionSnapshot> snapshots = new ArrayList<>(dimensions.size());
+            for (DimensionCapture dimension : dimensions) {
+                snapshots.add(dimension.snapshot);
+            }
+            return snapshots;
+        }
+
+        /**
+         * @return dimension id to structure fingerprint; a failed dimension keeps its entry from {@code previous}.
+         */
+        private Map<String, Long> fingerprints(Map<String, Long> previous) {
+            Map<String, Long> fingerprints = new LinkedHashMap<>();
+            for (DimensionCapture dimension : dimensions) {
+                String dimensionId = dimension.snapshot.getDimensionId();
+                Long fingerprint = dimension.failed ? previous.get(dimensionId) : Long.valueOf(dimension.fingerprint);
+                if (fingerprint != null) {
+                    fingerprints.put(dimensionId, fingerprint);
+                }
+            }
+            return fingerprints;
+        }
+
+        /**
+         * @return the captured dimensions; a failed one is replaced by its model in {@code previous}, or left out if
+         *     it was never published, rather than publishing whatever phases had finished.
+         */
+        private List<MtrPublishedModel.Dimension> results(MtrPublishedModel previous) {
+            List<MtrPublishedModel.Dimension> results = new ArrayList<>(dimensions.size());
+            for (DimensionCapture dimension : dimensions) {
+                if (!dimension.failed) {
+                    results.add(dimension.build());
+                    continue;
+                }
+                MtrPublishedModel.Dimension kept = previous.dimension(dimension.snapshot.getDimensionId());
+                if (kept != null) {
+                    results.add(kept);
+                }
+            }
+            return results;
+        }
+    }
+
+    private enum Phase {
+        STATIC, ROUTES, NODES, TRAINS, TIMETABLES, PACK, VERIFY, DONE
+    }
+
+    private static final class DimensionCapture {
+        private final MtrPublishedModel.Dimension previous;
+        private final Long previousFingerprint;
+        private MtrDimensionSnapshot snapshot;
+        private long fingerprint;
+        private int restarts;
+        private boolean failed;
+        private Phase phase;
+        private int cursor;
+        private DimensionOverview overview;
+        private List<StationInfo> stations;
+        private List<DepotInfo> depots;
+        private List<FareAreaInfo> fareAreas;
+        private final Map<Long, RouteDetail> routes = new LinkedHashMap<>();
+        private List<NodeInfo> nodes;
+        private List<TrainStatus> trains;
+        private final Map<Long, StationTimetable> timetables = new LinkedHashMap<>();
+        private RailwayDataSerializer.Packing packing;
+        private PackedRailwayData packed;
+        private long packedAt;
+
+        private DimensionCapture(MtrDimensionSnapshot snapshot, MtrPublishedModel.Dimension previous,
+                Long previousFingerprint) {
+            this.previous = previous;
+            this.previousFingerprint = previousFingerprint;
+            reset(snapshot);
+        }
+
+        /**
+         * Starts over on {@code snapshot}; a new snapshot instance also drops the memoized lookup index.
+         */
+        private void reset(MtrDimensionSnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.fingerprint = structureFingerprint(snapshot.getRailwayData());
+            this.phase = Phase.STATIC;
+            this.cursor = 0;
+            this.overview = null;
+            this.stations = Collections.emptyList();
+            this.depots = Collections.emptyList();
+            this.fareAreas = Collections.emptyList();
+            this.routes.clear();
+            this.nodes = Collections.emptyList();
+            this.trains = Collections.emptyList();
+            this.timetables.clear();
+            this.packing = null;
+            this.packed = null;
+            this.packedAt = 0L;
+        }
+
+        /**
+         * @return {@code true} while this dimension has work left.
+         */
+        private boolean step() {
+            switch (phase) {
+                case STATIC:
+                    List<DimensionOverview> overviews =
+                        MtrDataMapper.buildNetworkOverview(Collections.singletonList(snapshot));
+                    overview = overviews.isEmpty() ? null : overviews.get(0);
+                    stations = MtrDataMapper.buildStations(snapshot);
+                    depots = MtrDataMapper.buildDepots(snapshot);
+                    fareAreas = MtrDataMapper.buildFareAreas(snapshot);
+                    advance(Phase.ROUTES);
+                    break;
+                case ROUTES:
+                    List<RouteSummary> summaries = overview == null
+                        ? Collections.<RouteSummary>emptyList()
+                        : overview.getRoutes();
+                    int routeEnd = Math.min(summaries.size(), cursor + ROUTES_PER_STEP);
+                    for (; cursor < routeEnd; cursor++) {
+                        MtrDataMapper.buildRouteDetail(snapshot, summaries.get(cursor).getRouteId())
+                            .ifPresent(detail -> routes.put(detail.getRouteId(), detail));
+                    }
+                    if (cursor >= summaries.size()) {
+                        advance(Phase.NODES);
+                    }
+                    break;
+                case NODES:
+                    nodes = MtrDataMapper.buildNodePage(snapshot, null, Integer.MAX_VALUE).getNodes();
+                    advance(Phase.TRAINS);
+                    break;
+                case TRAINS:
+                    trains = MtrDataMapper.buildRouteTrains(snapshot, 0L);
+                    advance(Phase.TIMETABLES);
+                    break;
+                case TIMETABLES:
+                    int stationEnd = Math.min(stations.size(), cursor + STATIONS_PER_STEP);
+                    for (; cursor < stationEnd; cursor++) {
+                        MtrDataMapper.buildStationTimetable(snapshot, stations.get(cursor).getStationId(), null)
+                            .ifPresent(timetable -> timetables.put(timetable.getStationId(), timetable));
+                    }
+                    if (cursor >= stations.size()) {
+                        advance(Phase.PACK);
+                    }
+                    break;
+                case PACK:
+                    if (packing == null && reusePreviousPack()) {
+                        advance(Phase.VERIFY);
+                        break;
+                    }
+                    try {
+                        if (packing == null) {
+                            packing = new RailwayDataSerializer.Packing(snapshot);
+                        }
+                        if (!packing.step(PACKED_ELEMENTS_PER_STEP)) {
+                            packed = packing.finish();
+                            packedAt = System.currentTimeMillis();
+                            packing = null;
+                            advance(Phase.VERIFY);
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException("Unable to pack RailwayData", ex);
+                    }
+                    break;
+                case VERIFY:
+                    RailwayData data = snapshot.getRailwayData();
+                    if (structureFingerprint(data) == fingerprint) {
+                        advance(Phase.DONE);
+                    } else if (restarts < MAX_RESTARTS) {
+                        restarts++;
+                        BeaconMetrics.increment(METRIC_PREFIX + ".restarts");
+                        reset(new MtrDimensionSnapshot(snapshot.getDimensionId(), data));
+                    } else {
+                        // still being edited; the next capture tries again
+                        BeaconMetrics.increment(METRIC_PREFIX + ".verify.failed");
+                        failed = true;
+                        advance(Phase.DONE);
+                    }
+                    break;
+                default:
+                    return false;
+            }
+            return phase != Phase.DONE;
+        }
+
+        /**
+         * Carries the previous pack forward while it is young and the structure has not changed since, so a busy
+         * network is not re-packed on every capture.
+         */
+        private boolean reusePreviousPack() {
+            if (previous == null || previous.getPacked() == null || previousFingerprint == null
+                || previousFingerprint != fingerprint
+                || System.currentTimeMillis() - previous.getPackedAt() >= PACK_INTERVAL_MILLIS) {
+                return false;
+            }
+            packed = previous.getPacked();
+            packedAt = previous.getPackedAt();
+            return true;
+        }
+
+        private void advance(Phase next) {
+            phase = next;
+            cursor = 0;
+        }
+
+        private MtrPublishedModel.Dimension build() {
+            return new MtrPublishedModel.Dimension(snapshot.getDimensionId(), overview, stations, depots, fareAreas,
+                routes, nodes, trains, timetables, packed, packedAt);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.hydroline.beacon.provider.mtr;
+
+import com.hydroline.beacon.provider.util.ContentVersion;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+
+/**
+ * A dimension's RailwayData packed once into a single MessagePack buffer, with the offset, length, id and 64-bit hash
+ * of every dataset element recorded so the full dataset map or any subset of it can be emitted without packing again.
+ * The buffer starts on the heap; a cache may later move it to a read-only memory-mapped region in place
+ * ({@link #moveToMapped(ByteBuffer)}), so every holder of this instance, the published model included, drops the heap
+ * copy.
+ */
+public final class PackedRailwayData {
+    private final String dimensionId;
+    private final List<Dataset> datasets;
+    private final int length;
+    private final String contentHash;
+    // mapped is published before heap is cleared, so a reader seeing heap == null always finds mapped set
+    private volatile byte[] heap;
+    private volatile ByteBuffer mapped;
+
+    PackedRailwayData(String dimensionId, List<Dataset> datasets, byte[] heap) {
+        this.dimensionId = Objects.requireNonNull(dimensionId, "dimensionId");
+        this.datasets = Collections.unmodifiableList(new ArrayList<>(datasets));
+        this.heap = Objects.requireNonNull(heap, "heap");
+        this.length = heap.length;
+        this.contentHash = computeContentHash();
+    }
+
+    /**
+     * Swaps the heap buffer for {@code region}, which must hold exactly the packed bytes; readers already holding a
+     * view of the heap buffer keep it until they are done.
+     */
+    public void moveToMapped(ByteBuffer region) {
+        if (region.remaining() != length) {
+            throw new IllegalArgumentException("mapped region length mismatch");
+        }
+        mapped = region.asReadOnlyBuffer();
+        heap = null;
+    }
+
+    public String getDimensionId() {
+        return dimensionId;
+    }
+
+    public List<Dataset> getDatasets() {
+        return datasets;
+    }
+
+    /**
+     * @return hash over the dimension id and every element, stable for identical content.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean isMapped() {
+        return heap == null;
+    }
+
+    /**
+     * @return approximate heap footprint: the element index plus the buffer unless it is memory-mapped.
+     */
+    public long estimatedHeapBytes() {
+        long bytes = isMapped() ? 0L : length;
+        for (Dataset dataset : datasets) {
+            bytes += dataset.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the same bytes {@link RailwayDataSerializer#serialize(MtrDimensionSnapshot)} produces. Heap-backed
+     * instances return their shared buffer, which callers must not modify.
+     */
+    public byte[] toBytes() {
+        byte[] data = heap;
+        if (data != null) {
+            return data;
+        }
+        byte[] copy = new byte[length];
+        mapped.duplicate().get(copy);
+        return copy;
+    }
+
+    /**
+     * @return a view of the packed bytes that never copies them, whether they are on the heap or mapped. Like
+     * {@link #toBytes()}, callers must not modify a heap-backed view.
+     */
+    public ByteBuffer buffer() {
+        byte[] data = heap;
+        return data != null ? ByteBuffer.wrap(data) : mapped.duplicate();
+    }
+
+    /**
+     * Packs the dataset map keeping only the listed element ids per dataset.
+     *
+     * @param selected dataset name to element ids; {@code null} keeps every element, a missing dataset keeps none.
+     */
+    public byte[] toBytes(Map<String, Set<String>> selected) throws IOException {
+        if (selected == null) {
+            return toBytes();
+        }
+        byte[] data = heap;
+        ByteBuffer region = data == null ? mapped : null;
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            packer.packMapHeader(datasets.size());
+            for (Dataset dataset : datasets) {
+                Set<String> ids = selected.get(dataset.name);
+                int count = ids == null ? 0 : countSelected(dataset, ids);
+                packer.packString(dataset.name);
+                packer.packArrayHeader(count);
+                if (count == 0) {
+                    continue;
+                }
+                for (int i = 0; i < dataset.size(); i++) {
+                    if (ids.contains(dataset.ids.get(i))) {
+                        writeElement(packer, data, region, dataset, i);
+                    }
+                }
+            }
+            packer.flush();
+            return packer.toByteArray();
+        }
+    }
+
+    private static void writeElement(MessageBufferPacker packer, byte[] data, ByteBuffer region, Dataset dataset,
+                                     int index) throws IOException {
+        int offset = dataset.offsets[index];
+        int length = dataset.lengths[index];
+        if (data != null) {
+            packer.addPayload(data, offset, length);
+            return;
+        }
+        byte[] slice = new byte[length];
+        ByteBuffer view = region.duplicate();
+        view.position(view.position() + offset);
+        view.get(slice);
+        packer.writePayload(slice);
+    }
+
+    private static int countSelected(Dataset dataset, Set<String> ids) {
+        int count = 0;
+        for (String id : dataset.ids) {
+            if (ids.contains(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String computeContentHash() {
+        ContentVersion version = ContentVersion.create().update(dimensionId);
+        for (Dataset dataset : datasets) {
+            version.update(dataset.name).update(dataset.size());
+            for (long hash : dataset.hashes) {
+                version.update(hash);
+            }
+        }
+        return version.finish();
+    }
+
+    static long hash(byte[] data, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= data[i] & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * One of the eight named datasets, elements in the order RailwayData yields them.
+     */
+    public static final class Dataset {
+        private final String name;
+        private final List<String> ids;
+        private final int[] offsets;
+        private final int[] lengths;
+        private final long[] hashes;
+
+        Dataset(String name, List<String> ids, int[] offsets, int[] lengths, byte[] data) {
+            this.name = Objects.requireNonNull(name, "name");
+            this.ids = Collections.unmodifiableList(new ArrayList<>(ids));
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.hashes = new long[offsets.length];
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = hash(data, offsets[i], lengths[i]);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int size() {
+            return ids.size();
+        }
+
+        public String getId(int index) {
+            return ids.get(index);
+        }
+
+        public long getHash(int index) {
+            return hashes[index];
+        }
+
+        /**
+         * @return element id to content hash, in dataset order.
+         */
+        public Map<String, Long> hashesById() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                result.put(ids.get(i), hashes[i]);
+            }
+            return result;
+        }
+
+        private long estimatedBytes() {
+            long bytes = 64L + offsets.length * 24L;
+            for (String id : ids) {
+                bytes += 40L + id.length() * 2L;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.hydroline.beacon.provider.mtr;
+
+import java.util.List;
+
+/**
+ * Gateway base for the loaders: queries are answered from the model {@link MtrSnapshotEngine} publishes, so they run
+ * on any thread without touching the server. Subclasses only enumerate the dimensions and forward the server tick.
+ */
+public abstract class PublishedMtrQueryGateway extends ModelMtrQueryGateway {
+    private final MtrSnapshotEngine engine = new MtrSnapshotEngine(this::captureSnapshots);
+
+    /**
+     * Collects a fresh snapshot per loaded dimension; only called from {@link #onServerTick()}.
+     */
+    protected abstract List<MtrDimensionSnapshot> captureSnapshots();
+
+    /**
+     * Must be invoked on the server thread at the end of every server tick.
+     */
+    public void onServerTick() {
+        engine.tick();
+    }
+
+    /**
+     * Forces the next tick to start a fresh capture.
+     */
+    public void invalidate() {
+        engine.invalidate();
+    }
+
+    @Override
+    protected final MtrPublishedModel model() {
+        return engine.current();
+    }
+}
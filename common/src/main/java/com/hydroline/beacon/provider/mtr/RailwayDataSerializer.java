@@ -2,11 +2,13 @@ package com.hydroline.beacon.provider.mtr;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import mtr.data.NameColorDataBase;
 import mtr.data.Rail;
 import mtr.data.RailwayData;
 import mtr.data.SignalBlocks;
@@ -30,51 +32,200 @@ public final class RailwayDataSerializer {
     }
 
     public static byte[] serialize(MtrDimensionSnapshot snapshot) {
-        if (snapshot == null) {
-            return new byte[0];
+        PackedRailwayData packed = pack(snapshot);
+        return packed == null ? new byte[0] : packed.toBytes();
+    }
+
+    /**
+     * Packs every object of the eight datasets separately so callers can hash, diff or re-assemble them.
+     *
+     * @return the packed dimension, or {@code null} if the snapshot has no data or packing failed.
+     */
+    public static PackedRailwayData pack(MtrDimensionSnapshot snapshot) {
+        if (snapshot == null || snapshot.getRailwayData() == null) {
+            return null;
         }
-        RailwayData data = snapshot.getRailwayData();
-        if (data == null) {
-            return new byte[0];
+        try {
+            Packing packing = new Packing(snapshot);
+            while (packing.step(Integer.MAX_VALUE)) {
+                // runs to completion
+            }
+            return packing.finish();
+        } catch (IOException ex) {
+            LOGGER.warn("Unable to serialize RailwayData for {}: {}", snapshot.getDimensionId(), ex.getMessage());
+            return null;
         }
-        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+    }
+
+    /**
+     * Packs a dimension a bounded number of elements at a time, so {@link MtrSnapshotEngine} can spread the work over
+     * server ticks. Each dataset is written exactly like {@link RailwayData#writeMessagePackDataset}, recording where
+     * every element starts and ends in the output. Must only be used on the thread that owns the RailwayData.
+     */
+    static final class Packing {
+        private static final String[] NAMES = {
+            "stations", "platforms", "routes", "depots", "sidings", "lifts", "signalBlocks", "rails"
+        };
+
+        private final String dimensionId;
+        private final RailwayData data;
+        private final MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        private final List<DatasetLayout> layouts = new ArrayList<>(DATASET_COUNT);
+        // the dataset being written; its elements are copied when it starts so the array header stays accurate
+        private DatasetLayout layout;
+        private List<SerializedDataBase> items;
+        private Map<?, String> keys;
+        private int index;
+
+        Packing(MtrDimensionSnapshot snapshot) throws IOException {
+            this.dimensionId = snapshot.getDimensionId();
+            this.data = snapshot.getRailwayData();
             packer.packMapHeader(DATASET_COUNT);
-            RailwayData.writeMessagePackDataset(packer, safe(data.stations), "stations");
-            RailwayData.writeMessagePackDataset(packer, safe(data.platforms), "platforms");
-            RailwayData.writeMessagePackDataset(packer, safe(data.routes), "routes");
-            RailwayData.writeMessagePackDataset(packer, safe(data.depots), "depots");
-            RailwayData.writeMessagePackDataset(packer, safe(data.sidings), "sidings");
-            RailwayData.writeMessagePackDataset(packer, safe(data.lifts), "lifts");
-            RailwayData.writeMessagePackDataset(packer, safe(signalBlocks(data)), "signalBlocks");
-            RailwayData.writeMessagePackDataset(packer, safe(flattenRails(data)), "rails");
+        }
+
+        /**
+         * Writes up to {@code maxElements} elements of the current dataset.
+         *
+         * @return {@code true} while elements remain.
+         */
+        boolean step(int maxElements) throws IOException {
+            if (layout == null) {
+                if (layouts.size() == DATASET_COUNT) {
+                    return false;
+                }
+                begin(layouts.size());
+            }
+            int end = (int) Math.min(items.size(), (long) index + Math.max(1, maxElements));
+            for (; index < end; index++) {
+                SerializedDataBase item = items.get(index);
+                long start = packer.getTotalWrittenBytes();
+                packer.packMapHeader(item.messagePackLength());
+                item.toMessagePack(packer);
+                layout.offsets[index] = (int) start;
+                layout.lengths[index] = (int) (packer.getTotalWrittenBytes() - start);
+                layout.ids.add(elementId(item, keys, index));
+            }
+            if (index >= items.size()) {
+                layouts.add(layout);
+                layout = null;
+                items = null;
+                keys = null;
+                index = 0;
+            }
+            return layouts.size() < DATASET_COUNT;
+        }
+
+        PackedRailwayData finish() throws IOException {
+            if (layouts.size() < DATASET_COUNT) {
+                throw new IllegalStateException("packing has not finished");
+            }
             packer.flush();
-            return packer.toByteArray();
-        } catch (IOException ex) {
-            LOGGER.warn("Unable to serialize RailwayData for {}: {}", snapshot.getDimensionId(), ex.getMessage());
-            return new byte[0];
+            byte[] bytes = packer.toByteArray();
+            packer.close();
+            List<PackedRailwayData.Dataset> datasets = new ArrayList<>(DATASET_COUNT);
+            for (DatasetLayout done : layouts) {
+                datasets.add(new PackedRailwayData.Dataset(done.name, done.ids, done.offsets, done.lengths, bytes));
+            }
+            return new PackedRailwayData(dimensionId, datasets, bytes);
+        }
+
+        private void begin(int dataset) throws IOException {
+            Collection<? extends SerializedDataBase> source;
+            keys = null;
+            switch (dataset) {
+                case 0:
+                    source = safe(data.stations);
+                    break;
+                case 1:
+                    source = safe(data.platforms);
+                    break;
+                case 2:
+                    source = safe(data.routes);
+                    break;
+                case 3:
+                    source = safe(data.depots);
+                    break;
+                case 4:
+                    source = safe(data.sidings);
+                    break;
+                case 5:
+                    source = safe(data.lifts);
+                    break;
+                case 6:
+                    source = safe(signalBlocks(data));
+                    break;
+                default:
+                    Map<Rail, String> rails = keyedRails(data);
+                    keys = rails;
+                    source = rails.keySet();
+                    break;
+            }
+            items = new ArrayList<SerializedDataBase>(source);
+            index = 0;
+            layout = new DatasetLayout(NAMES[dataset], items.size());
+            packer.packString(layout.name);
+            packer.packArrayHeader(items.size());
         }
     }
 
+    private static String elementId(SerializedDataBase item, Map<?, String> keys, int index) {
+        if (keys != null) {
+            String key = keys.get(item);
+            if (key != null) {
+                return key;
+            }
+        }
+        if (item instanceof NameColorDataBase) {
+            return Long.toString(((NameColorDataBase) item).id);
+        }
+        return "#" + index;
+    }
+
     private static <T extends SerializedDataBase> Collection<T> safe(Collection<T> source) {
         return source == null ? Collections.emptyList() : source;
     }
 
-    private static Collection<Rail> flattenRails(RailwayData data) {
+    /**
+     * Rails have no id of their own; they are keyed by the node positions of the {@code rails} map. A rail reachable
+     * from both ends keeps the lexicographically smaller key so the id is stable between captures.
+     */
+    private static Map<Rail, String> keyedRails(RailwayData data) {
         Map<Object, Map<Object, Rail>> rails = readRails(data);
         if (rails.isEmpty()) {
-            return Collections.emptyList();
+            return Collections.emptyMap();
         }
-        Set<Rail> flattened = Collections.newSetFromMap(new IdentityHashMap<>());
-        rails.values().forEach(entry -> {
-            if (entry != null) {
-                for (Rail rail : entry.values()) {
-                    if (rail != null) {
-                        flattened.add(rail);
-                    }
-                }
+        Map<Rail, String> keyed = new IdentityHashMap<>();
+        rails.forEach((start, connections) -> {
+            if (connections == null) {
+                return;
             }
+            connections.forEach((end, rail) -> {
+                if (rail == null) {
+                    return;
+                }
+                String key = positionKey(start) + "->" + positionKey(end);
+                String existing = keyed.get(rail);
+                if (existing == null || key.compareTo(existing) < 0) {
+                    keyed.put(rail, key);
+                }
+            });
         });
-        return flattened;
+        return keyed;
+    }
+
+    /**
+     * Reduces a block position's {@code toString()} ({@code BlockPos{x=1, y=64, z=-3}}) to {@code 1,64,-3}.
+     */
+    private static String positionKey(Object position) {
+        String text = String.valueOf(position);
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '-' || c == ',') {
+                builder.append(c);
+            }
+        }
+        return builder.length() == 0 ? text : builder.toString();
     }
 
     @SuppressWarnings("unchecked")
@@ -138,4 +289,18 @@ public final class RailwayDataSerializer {
         }
         return null;
     }
+
+    private static final class DatasetLayout {
+        private final String name;
+        private final List<String> ids;
+        private final int[] offsets;
+        private final int[] lengths;
+
+        private DatasetLayout(String name, int size) {
+            this.name = name;
+            this.ids = new ArrayList<>(size);
+            this.offsets = new int[size];
+            this.lengths = new int[size];
+        }
+    }
 }
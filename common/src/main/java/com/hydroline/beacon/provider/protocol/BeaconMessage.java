@@ -10,12 +10,18 @@ public final class BeaconMessage {
     private final String requestId;
     private final String action;
     private final JsonObject payload;
+    private final String compression;
 
     public BeaconMessage(int protocolVersion, String requestId, String action, JsonObject payload) {
+        this(protocolVersion, requestId, action, payload, null);
+    }
+
+    public BeaconMessage(int protocolVersion, String requestId, String action, JsonObject payload, String compression) {
         this.protocolVersion = protocolVersion;
         this.requestId = requestId;
         this.action = action;
         this.payload = payload;
+        this.compression = compression;
     }
 
     public int getProtocolVersion() {
@@ -33,4 +39,11 @@ public final class BeaconMessage {
     public JsonObject getPayload() {
         return payload;
     }
+
+    /**
+     * @return the response compression the sender accepts (e.g. {@code deflate}), or {@code null}.
+     */
+    public String getCompression() {
+        return compression;
+    }
 }
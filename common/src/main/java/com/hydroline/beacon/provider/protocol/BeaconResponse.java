@@ -1,6 +1,10 @@
 package com.hydroline.beacon.provider.protocol;
 
 import com.google.gson.JsonObject;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -11,12 +15,16 @@ public final class BeaconResponse {
     private final ResultCode result;
     private final String message;
     private final JsonObject payload;
+    private final List<ByteBuffer> attachments;
 
     private BeaconResponse(Builder builder) {
         this.requestId = builder.requestId;
         this.result = builder.result;
         this.message = builder.message;
         this.payload = builder.payload;
+        this.attachments = builder.attachments.isEmpty()
+            ? Collections.<ByteBuffer>emptyList()
+            : Collections.unmodifiableList(new ArrayList<ByteBuffer>(builder.attachments));
     }
 
     public String getRequestId() {
@@ -35,12 +43,22 @@ public final class BeaconResponse {
         return payload;
     }
 
+    /**
+     * Binary blobs the payload refers to by index. Only transports that can stream raw bytes (the Netty gateway)
+     * deliver them; handlers must not produce attachments for other transports. The buffers may be shared with cached
+     * responses, so readers must not modify them and work on a {@link ByteBuffer#duplicate()}.
+     */
+    public List<ByteBuffer> getAttachments() {
+        return attachments;
+    }
+
     public Builder toBuilder() {
         return new Builder()
             .requestId(requestId)
             .result(result)
             .message(message)
-            .payload(payload);
+            .payload(payload)
+            .attachments(attachments);
     }
 
     public static Builder builder(String requestId) {
@@ -52,6 +70,7 @@ public final class BeaconResponse {
         private ResultCode result = ResultCode.OK;
         private String message = "";
         private JsonObject payload = new JsonObject();
+        private final List<ByteBuffer> attachments = new ArrayList<>();
 
         public Builder requestId(String requestId) {
             this.requestId = Objects.requireNonNull(requestId, "requestId");
@@ -73,6 +92,27 @@ public final class BeaconResponse {
             return this;
         }
 
+        /**
+         * Appends a binary attachment; the payload references it by its position in append order.
+         */
+        public Builder attachment(byte[] data) {
+            return attachment(ByteBuffer.wrap(Objects.requireNonNull(data, "data")));
+        }
+
+        /**
+         * Appends the remaining bytes of {@code data} without copying them, e.g. a memory-mapped region.
+         */
+        public Builder attachment(ByteBuffer data) {
+            attachments.add(Objects.requireNonNull(data, "data").duplicate());
+            return this;
+        }
+
+        public Builder attachments(List<ByteBuffer> data) {
+            attachments.clear();
+            attachments.addAll(Objects.requireNonNull(data, "data"));
+            return this;
+        }
+
         public BeaconResponse build() {
             if (requestId == null || requestId.isEmpty()) {
                 throw new IllegalStateException("requestId is required");
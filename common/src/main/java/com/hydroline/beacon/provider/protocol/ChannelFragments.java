@@ -0,0 +1,91 @@
+package com.hydroline.beacon.provider.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * Fragment framing for plugin-channel responses. A response that fits in one packet is sent as the bare JSON body;
+ * a larger one is split into frames laid out as
+ * {@code [marker u8][flags u8][requestId length u8][requestId ASCII][index u16][count u16][body slice]}
+ * (big-endian). JSON always starts with {@code '{'}, so the first byte tells receivers which form they got.
+ * A body with {@link #FLAG_DEFLATE} is zlib-compressed JSON and is always framed, even when it fits in one packet.
+ */
+public final class ChannelFragments {
+    public static final byte MARKER = (byte) 0xB1;
+    /** Default upper bound for one packet, below the 32 KiB proxies allow for plugin messages. */
+    public static final int DEFAULT_MAX_PACKET_BYTES = 30 * 1024;
+    public static final int MAX_FRAGMENTS = 0xFFFF;
+    public static final int FLAG_DEFLATE = 0x01;
+    /** Value of the request envelope's {@code compression} field that enables {@link #FLAG_DEFLATE}. */
+    public static final String COMPRESSION_DEFLATE = "deflate";
+
+    private static final int FIXED_HEADER_BYTES = 1 + 1 + 1 + 2 + 2;
+    private static final int MIN_SLICE_BYTES = 256;
+
+    private ChannelFragments() {
+    }
+
+    /**
+     * Splits {@code body} into packets of at most {@code maxPacketBytes}.
+     *
+     * @return the body itself when it fits and {@code flags} is zero, otherwise the frames in order.
+     * @throws IllegalArgumentException if the body would need more than {@link #MAX_FRAGMENTS} frames.
+     */
+    public static List<byte[]> split(String requestId, byte[] body, int flags, int maxPacketBytes) {
+        Objects.requireNonNull(body, "body");
+        if (flags == 0 && body.length <= maxPacketBytes) {
+            return Collections.singletonList(body);
+        }
+        byte[] id = (requestId == null ? "" : requestId).getBytes(StandardCharsets.US_ASCII);
+        if (id.length > 0xFF) {
+            throw new IllegalArgumentException("requestId too long for a fragment header");
+        }
+        int header = FIXED_HEADER_BYTES + id.length;
+        int slice = Math.max(MIN_SLICE_BYTES, maxPacketBytes - header);
+        int count = Math.max(1, (body.length + slice - 1) / slice);
+        if (count > MAX_FRAGMENTS) {
+            throw new IllegalArgumentException("Response of " + body.length + " bytes needs " + count + " fragments");
+        }
+        List<byte[]> frames = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            int offset = index * slice;
+            int length = Math.min(slice, body.length - offset);
+            ByteBuffer frame = ByteBuffer.allocate(header + length);
+            frame.put(MARKER);
+            frame.put((byte) flags);
+            frame.put((byte) id.length);
+            frame.put(id);
+            frame.putShort((short) index);
+            frame.putShort((short) count);
+            frame.put(body, offset, length);
+            frames.add(frame.array());
+        }
+        return frames;
+    }
+
+    /**
+     * Compresses {@code body} in the zlib format (RFC 1950), readable by {@link java.util.zip.Inflater} and
+     * Node's {@code zlib.inflateSync}.
+     */
+    public static byte[] deflate(byte[] body, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -39,7 +39,9 @@ public final class MessageSerializer {
         String action = json.has("action") ? json.get("action").getAsString() : ChannelConstants.DEFAULT_ACTION;
         JsonObject payload = json.has("payload") && json.get("payload").isJsonObject()
             ? json.getAsJsonObject("payload") : new JsonObject();
-        return new BeaconMessage(protocolVersion, requestId, action, payload);
+        String compression = json.has("compression") && json.get("compression").isJsonPrimitive()
+            ? json.get("compression").getAsString() : null;
+        return new BeaconMessage(protocolVersion, requestId, action, payload, compression);
     }
 
     public static JsonObject serializeToJson(BeaconResponse response) {
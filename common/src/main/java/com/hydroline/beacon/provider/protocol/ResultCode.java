@@ -9,5 +9,7 @@ public enum ResultCode {
     INVALID_ACTION,
     INVALID_PAYLOAD,
     NOT_READY,
-    ERROR
+    ERROR,
+    /** The client's {@code ifNoneMatch} version is still current; the response carries no payload. */
+    NOT_MODIFIED
 }
@@ -0,0 +1,203 @@
+package com.hydroline.beacon.provider.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.hydroline.beacon.provider.create.CreateQueryGateway;
+import com.hydroline.beacon.provider.create.CreateQueryRegistry;
+import com.hydroline.beacon.provider.mtr.MtrQueryGateway;
+import com.hydroline.beacon.provider.mtr.MtrQueryRegistry;
+import com.hydroline.beacon.provider.protocol.BeaconMessage;
+import com.hydroline.beacon.provider.protocol.BeaconResponse;
+import com.hydroline.beacon.provider.protocol.MessageSerializer;
+import com.hydroline.beacon.provider.protocol.ResultCode;
+import com.hydroline.beacon.provider.transport.TransportContext;
+import com.hydroline.beacon.provider.util.NamedThreadFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code beacon:batch}: runs up to {@code beacon.batchMaxRequests} actions in one round trip and answers with one
+ * combined response. All MTR sub-requests read the same {@link MtrQueryGateway#pinned() pinned} snapshot version and all
+ * Create sub-requests the same {@link CreateQueryGateway#pinned() pinned} view; with {@code parallel} they run
+ * concurrently on the service's {@code beacon.batchWorkers} threads (queue bounded by {@code beacon.batchQueueCapacity}),
+ * and a sub-request the saturated pool refuses runs on the calling thread instead.
+ */
+public final class BatchActionHandler implements BeaconActionHandler {
+    public static final String ACTION = "beacon:batch";
+
+    private static final int MAX_REQUESTS = Math.max(1, Integer.getInteger("beacon.batchMaxRequests", 16));
+    private static final int WORKERS = Math.max(1, Integer.getInteger("beacon.batchWorkers", 4));
+    private static final int QUEUE_CAPACITY = Math.max(1, Integer.getInteger("beacon.batchQueueCapacity", 64));
+    private static final long IDLE_KEEP_ALIVE_SECONDS = 60L;
+
+    private final BeaconProviderService service;
+    private final ThreadPoolExecutor executor;
+
+    public BatchActionHandler(BeaconProviderService service) {
+        this.service = Objects.requireNonNull(service, "service");
+        this.executor = new ThreadPoolExecutor(
+            WORKERS,
+            WORKERS,
+            IDLE_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+            new NamedThreadFactory("beacon-batch")
+        );
+        // idle workers exit, so a service that is no longer used leaves no threads behind
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public String action() {
+        return ACTION;
+    }
+
+    @Override
+    public BeaconResponse handle(BeaconMessage message, TransportContext context) {
+        JsonObject payload = message.getPayload();
+        if (!payload.has("requests") || !payload.get("requests").isJsonArray()) {
+            return invalidPayload(message.getRequestId(), "requests array is required");
+        }
+        JsonArray requests = payload.getAsJsonArray("requests");
+        if (requests.size() == 0 || requests.size() > MAX_REQUESTS) {
+            return invalidPayload(message.getRequestId(), "requests must contain 1 to " + MAX_REQUESTS + " entries");
+        }
+        boolean parallel = payload.has("parallel") && payload.get("parallel").getAsBoolean();
+        MtrQueryGateway pinned = MtrQueryRegistry.get().pinned();
+        CreateQueryGateway pinnedCreate = CreateQueryRegistry.get().pinned();
+
+        List<BeaconResponse> responses = new ArrayList<>(requests.size());
+        List<Future<BeaconResponse>> futures = new ArrayList<>(requests.size());
+        List<String> actions = new ArrayList<>(requests.size());
+        for (JsonElement element : requests) {
+            BeaconMessage sub = toSubRequest(message, element);
+            actions.add(sub == null ? null : sub.getAction());
+            BeaconResponse rejected = validate(message.getRequestId(), sub);
+            if (rejected != null) {
+                responses.add(rejected);
+                futures.add(null);
+            } else if (parallel) {
+                Future<BeaconResponse> future = submit(() -> run(pinned, pinnedCreate, sub, context));
+                responses.add(future == null ? run(pinned, pinnedCreate, sub, context) : null);
+                futures.add(future);
+            } else {
+                responses.add(run(pinned, pinnedCreate, sub, context));
+                futures.add(null);
+            }
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            if (futures.get(i) != null) {
+                responses.set(i, await(message.getRequestId(), futures.get(i)));
+            }
+        }
+        BeaconMetrics.add("batch.requests", requests.size());
+
+        BeaconResponse.Builder builder = BeaconResponse.builder(message.getRequestId()).result(ResultCode.OK);
+        int attachments = 0;
+        JsonArray results = new JsonArray();
+        for (int i = 0; i < responses.size(); i++) {
+            BeaconResponse response = responses.get(i);
+            JsonObject result = MessageSerializer.serializeToJson(response);
+            result.remove("protocolVersion");
+            result.remove("requestId");
+            if (actions.get(i) != null) {
+                result.addProperty("action", actions.get(i));
+            }
+            if (!response.getAttachments().isEmpty()) {
+                // the sub-response's attachment indices are relative to this offset in the combined response
+                result.addProperty("attachmentOffset", attachments);
+                for (ByteBuffer attachment : response.getAttachments()) {
+                    builder.attachment(attachment);
+                    attachments++;
+                }
+            }
+            results.add(result);
+        }
+        JsonObject combined = new JsonObject();
+        combined.addProperty("dataVersion", pinned.dataVersion());
+        combined.add("responses", results);
+        return builder.payload(combined).build();
+    }
+
+    private static BeaconMessage toSubRequest(BeaconMessage parent, JsonElement element) {
+        if (element == null || !element.isJsonObject()) {
+            return null;
+        }
+        JsonObject entry = element.getAsJsonObject();
+        if (!entry.has("action") || !entry.get("action").isJsonPrimitive()) {
+            return null;
+        }
+        JsonObject payload = entry.has("payload") && entry.get("payload").isJsonObject()
+            ? entry.getAsJsonObject("payload") : new JsonObject();
+        return new BeaconMessage(parent.getProtocolVersion(), parent.getRequestId(), entry.get("action").getAsString(),
+            payload);
+    }
+
+    private static BeaconResponse validate(String requestId, BeaconMessage sub) {
+        if (sub == null) {
+            return invalidPayload(requestId, "each request needs an action");
+        }
+        if (ACTION.equals(sub.getAction())) {
+            return BeaconResponse.builder(requestId)
+                .result(ResultCode.INVALID_ACTION)
+                .message("Batches cannot be nested")
+                .build();
+        }
+        return null;
+    }
+
+    private BeaconResponse run(MtrQueryGateway pinned, CreateQueryGateway pinnedCreate, BeaconMessage sub,
+                               TransportContext context) {
+        return MtrQueryRegistry.withGateway(pinned,
+            () -> CreateQueryRegistry.withGateway(pinnedCreate, () -> service.handle(sub, context)));
+    }
+
+    /**
+     * @return the queued sub-request, or {@code null} when the pool is saturated and the caller should run it itself.
+     */
+    private Future<BeaconResponse> submit(Callable<BeaconResponse> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException ex) {
+            BeaconMetrics.increment("batch.callerRuns");
+            return null;
+        }
+    }
+
+    private static BeaconResponse await(String requestId, Future<BeaconResponse> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return error(requestId, "Interrupted");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+            return error(requestId, "Handler error: " + cause.getMessage());
+        }
+    }
+
+    private static BeaconResponse invalidPayload(String requestId, String reason) {
+        return BeaconResponse.builder(requestId)
+            .result(ResultCode.INVALID_PAYLOAD)
+            .message(reason)
+            .build();
+    }
+
+    private static BeaconResponse error(String requestId, String reason) {
+        return BeaconResponse.builder(requestId)
+            .result(ResultCode.ERROR)
+            .message(reason)
+            .build();
+    }
+}
@@ -11,4 +11,27 @@ public interface BeaconActionHandler {
     String action();
 
     BeaconResponse handle(BeaconMessage message, TransportContext context);
+
+    /**
+     * Read-only actions produce the same response for the same payload at a given moment, so concurrent identical
+     * requests may share one execution.
+     */
+    default boolean readOnly() {
+        return false;
+    }
+
+    /**
+     * How long a successful response of a read-only action may be served from the response cache; {@code 0} disables
+     * caching for the action.
+     */
+    default long cacheTtlMillis() {
+        return 0L;
+    }
+
+    /**
+     * Version of the data the action reads. Cached responses recorded under another version are discarded.
+     */
+    default long dataVersion() {
+        return 0L;
+    }
 }
@@ -0,0 +1,57 @@
+package com.hydroline.beacon.provider.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide named counters and gauges used to tune caches, queues and capture budgets; exposed through
+ * {@link MetricsActionHandler}.
+ */
+public final class BeaconMetrics {
+    private static final ConcurrentHashMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AtomicLong> GAUGES = new ConcurrentHashMap<>();
+
+    private BeaconMetrics() {
+    }
+
+    public static void increment(String name) {
+        add(name, 1L);
+    }
+
+    public static void add(String name, long delta) {
+        COUNTERS.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    public static long get(String name) {
+        LongAdder adder = COUNTERS.get(name);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    /**
+     * @return the current value of every counter, sorted by name.
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        COUNTERS.forEach((name, adder) -> values.put(name, adder.sum()));
+        return values;
+    }
+
+    /**
+     * Records the latest value of a level-style metric such as queue depth or capture progress.
+     */
+    public static void setGauge(String name, long value) {
+        GAUGES.computeIfAbsent(name, key -> new AtomicLong()).set(value);
+    }
+
+    /**
+     * @return the current value of every gauge, sorted by name.
+     */
+    public static Map<String, Long> gauges() {
+        Map<String, Long> values = new TreeMap<>();
+        GAUGES.forEach((name, gauge) -> values.put(name, gauge.get()));
+        return values;
+    }
+}
@@ -17,8 +17,9 @@ public final class BeaconServiceFactory {
     }
 
     public static DefaultBeaconProviderService createDefault() {
-        return new DefaultBeaconProviderService(Arrays.asList(
+        DefaultBeaconProviderService service = new DefaultBeaconProviderService(Arrays.asList(
             new PingActionHandler(),
+            new MetricsActionHandler(),
             new MtrGetRailwaySnapshotActionHandler(),
             new MtrGetRouteTrainsActionHandler(),
             new MtrGetStationScheduleActionHandler(),
@@ -27,5 +28,6 @@ public final class BeaconServiceFactory {
             new CreateGetNetworkActionHandler(),
             new CreateGetRealtimeActionHandler()
         ));
+        return service.register(new BatchActionHandler(service));
     }
 }
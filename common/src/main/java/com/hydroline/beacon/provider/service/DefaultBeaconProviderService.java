@@ -5,6 +5,7 @@ import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import com.hydroline.beacon.provider.protocol.ChannelConstants;
 import com.hydroline.beacon.provider.protocol.ResultCode;
 import com.hydroline.beacon.provider.transport.TransportContext;
+import com.hydroline.beacon.provider.util.CanonicalJson;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
@@ -15,6 +16,10 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public final class DefaultBeaconProviderService implements BeaconProviderService {
     private final Map<String, BeaconActionHandler> handlers = new ConcurrentHashMap<>();
+    private static final int RESPONSE_CACHE_ENTRIES = Integer.getInteger("beacon.responseCacheEntries", 256);
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private final ResponseCache responseCache = new ResponseCache(Math.max(0, RESPONSE_CACHE_ENTRIES));
 
     public DefaultBeaconProviderService(Collection<BeaconActionHandler> initialHandlers) {
         if (initialHandlers != null) {
@@ -49,7 +54,19 @@ public final class DefaultBeaconProviderService implements BeaconProviderService
                 .build();
         }
 
+        if (RequestDeadline.of(request.getPayload(), context).isExpired()) {
+            // the client has already given up; don't spend a worker on it
+            BeaconMetrics.increment(RequestDeadline.EXPIRED);
+            return BeaconResponse.builder(request.getRequestId())
+                .result(ResultCode.BUSY)
+                .message("deadline exceeded")
+                .build();
+        }
+
         try {
+            if (handler.readOnly()) {
+                return handleReadOnly(handler, request, context);
+            }
             return handler.handle(request, context);
         } catch (Exception ex) {
             return BeaconResponse.builder(request.getRequestId())
@@ -58,4 +75,45 @@ public final class DefaultBeaconProviderService implements BeaconProviderService
                 .build();
         }
     }
+
+    private BeaconResponse handleReadOnly(BeaconActionHandler handler, BeaconMessage request, TransportContext context)
+        throws Exception {
+        String key = requestKey(handler, request, context);
+        long ttlMillis = handler.cacheTtlMillis();
+        if (ttlMillis <= 0L || !responseCache.enabled()) {
+            return compute(key, handler, request, context);
+        }
+        long version = handler.dataVersion();
+        BeaconResponse cached = responseCache.get(handler.action(), version, key);
+        if (cached != null) {
+            return RequestCoalescer.withRequestId(cached, request.getRequestId());
+        }
+        BeaconResponse response = compute(key, handler, request, context);
+        if (response.getResult() == ResultCode.OK) {
+            responseCache.put(handler.action(), version, key, response, ttlMillis);
+        }
+        return response;
+    }
+
+    /**
+     * A request with its own {@code deadlineMs} runs alone: a shared computation is cancelled with its leader's
+     * deadline, which must not fail identical requests that allowed more time or none at all.
+     */
+    private BeaconResponse compute(String key, BeaconActionHandler handler, BeaconMessage request,
+            TransportContext context) throws Exception {
+        if (RequestDeadline.of(request.getPayload(), context).isBounded()) {
+            return handler.handle(request, context);
+        }
+        return coalescer.execute(key, request.getRequestId(), () -> handler.handle(request, context));
+    }
+
+    /**
+     * Transport kind is part of the key because gateway responses may carry attachments other transports cannot use;
+     * the data version keeps a request pinned to one version (see {@code beacon:batch}) from joining a computation on
+     * another.
+     */
+    private static String requestKey(BeaconActionHandler handler, BeaconMessage request, TransportContext context) {
+        return handler.action() + '|' + context.getKind() + '|' + handler.dataVersion() + '|'
+            + CanonicalJson.toCanonicalString(RequestDeadline.stripFrom(request.getPayload()));
+    }
 }
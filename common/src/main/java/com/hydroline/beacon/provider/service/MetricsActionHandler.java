@@ -0,0 +1,40 @@
+package com.hydroline.beacon.provider.service;
+
+import com.google.gson.JsonObject;
+import com.hydroline.beacon.provider.protocol.BeaconMessage;
+import com.hydroline.beacon.provider.protocol.BeaconResponse;
+import com.hydroline.beacon.provider.protocol.ResultCode;
+import com.hydroline.beacon.provider.transport.TransportContext;
+import java.util.Map;
+
+/**
+ * Built-in action that reports the {@link BeaconMetrics} counters (cache hits/misses etc.) and gauges for tuning.
+ */
+public final class MetricsActionHandler implements BeaconActionHandler {
+    public static final String ACTION = "beacon:metrics";
+
+    @Override
+    public String action() {
+        return ACTION;
+    }
+
+    @Override
+    public BeaconResponse handle(BeaconMessage message, TransportContext context) {
+        JsonObject counters = new JsonObject();
+        for (Map.Entry<String, Long> entry : BeaconMetrics.snapshot().entrySet()) {
+            counters.addProperty(entry.getKey(), entry.getValue());
+        }
+        JsonObject gauges = new JsonObject();
+        for (Map.Entry<String, Long> entry : BeaconMetrics.gauges().entrySet()) {
+            gauges.addProperty(entry.getKey(), entry.getValue());
+        }
+        JsonObject payload = new JsonObject();
+        payload.addProperty("timestamp", System.currentTimeMillis());
+        payload.add("counters", counters);
+        payload.add("gauges", gauges);
+        return BeaconResponse.builder(message.getRequestId())
+            .result(ResultCode.OK)
+            .payload(payload)
+            .build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.hydroline.beacon.provider.service;
+
+import com.hydroline.beacon.provider.protocol.BeaconResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution: while a computation for a key is running, identical requests wait for it instead of
+ * starting their own, and each caller receives the shared result under its own request id.
+ */
+final class RequestCoalescer {
+    static final String SHARED = "coalesce.shared";
+
+    private final ConcurrentHashMap<String, CompletableFuture<BeaconResponse>> inFlight = new ConcurrentHashMap<>();
+
+    BeaconResponse execute(String key, String requestId, Supplier<BeaconResponse> computation) throws Exception {
+        CompletableFuture<BeaconResponse> created = new CompletableFuture<>();
+        CompletableFuture<BeaconResponse> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            BeaconMetrics.increment(SHARED);
+            return withRequestId(await(existing), requestId);
+        }
+        try {
+            BeaconResponse response = computation.get();
+            created.complete(response);
+            return response;
+        } catch (RuntimeException | Error ex) {
+            created.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private static BeaconResponse await(CompletableFuture<BeaconResponse> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw ex;
+        }
+    }
+
+    static BeaconResponse withRequestId(BeaconResponse response, String requestId) {
+        if (requestId.equals(response.getRequestId())) {
+            return response;
+        }
+        return response.toBuilder().requestId(requestId).build();
+    }
+}
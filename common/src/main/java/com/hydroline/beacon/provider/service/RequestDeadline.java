@@ -0,0 +1,99 @@
+package com.hydroline.beacon.provider.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.hydroline.beacon.provider.transport.TransportContext;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Client deadline taken from the payload's {@code deadlineMs} (milliseconds after the provider received the request),
+ * doubling as a cooperative cancellation token: long-running work polls {@link #isCancelled()} between units of work
+ * and stops once the deadline passed or the waiting caller gave up. Work dropped before it started counts as
+ * {@code deadline.expired}, work stopped or left running after its caller gave up as {@code deadline.abandoned}.
+ */
+public final class RequestDeadline {
+    public static final String FIELD = "deadlineMs";
+    public static final String EXPIRED = "deadline.expired";
+    public static final String ABANDONED = "deadline.abandoned";
+
+    private final long deadlineMillis;
+    private volatile boolean cancelled;
+
+    private RequestDeadline(long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * @return the request's deadline, or an unbounded token when the payload carries no valid {@code deadlineMs}.
+     */
+    public static RequestDeadline of(JsonObject payload, TransportContext context) {
+        JsonElement value = payload == null ? null : payload.get(FIELD);
+        if (value == null || !value.isJsonPrimitive() || !value.getAsJsonPrimitive().isNumber()) {
+            return unbounded();
+        }
+        long budget = Math.max(0L, value.getAsLong());
+        long receivedAt = context == null || context.getReceivedAt() == null
+            ? System.currentTimeMillis()
+            : context.getReceivedAt().toEpochMilli();
+        return new RequestDeadline(receivedAt + budget);
+    }
+
+    public static RequestDeadline unbounded() {
+        return new RequestDeadline(Long.MAX_VALUE);
+    }
+
+    public boolean isBounded() {
+        return deadlineMillis != Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return isBounded() && System.currentTimeMillis() >= deadlineMillis;
+    }
+
+    /**
+     * @return the time left, capped at {@code limitMillis}; {@code 0} once expired.
+     */
+    public long remainingMillis(long limitMillis) {
+        if (!isBounded()) {
+            return limitMillis;
+        }
+        return Math.max(0L, Math.min(limitMillis, deadlineMillis - System.currentTimeMillis()));
+    }
+
+    /**
+     * Signals running work that nobody waits for its result any more.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || isExpired();
+    }
+
+    /**
+     * @throws CancellationException if {@link #isCancelled()}.
+     */
+    public void checkNotCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("request deadline exceeded");
+        }
+    }
+
+    /**
+     * @return {@code payload} without {@code deadlineMs}, so requests differing only in their deadline share
+     *     cache entries; {@code payload} itself when it has no deadline.
+     */
+    public static JsonObject stripFrom(JsonObject payload) {
+        if (payload == null || !payload.has(FIELD)) {
+            return payload;
+        }
+        JsonObject stripped = new JsonObject();
+        for (java.util.Map.Entry<String, JsonElement> entry : payload.entrySet()) {
+            if (!FIELD.equals(entry.getKey())) {
+                stripped.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return stripped;
+    }
+}
@@ -0,0 +1,100 @@
+package com.hydroline.beacon.provider.service;
+
+import com.hydroline.beacon.provider.protocol.BeaconResponse;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU of successful responses keyed by action, normalized payload and data version. Entries expire
+ * after the handler's TTL, and a data version change for an action evicts every entry recorded under the previous one.
+ */
+final class ResponseCache {
+    static final String HITS = "cache.response.hits";
+    static final String MISSES = "cache.response.misses";
+    static final String EVICTIONS = "cache.response.evictions";
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, CachedResponse> entries;
+    private final Map<String, Long> latestVersions = new HashMap<>();
+
+    ResponseCache(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must be >= 0");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                if (size() > ResponseCache.this.maxEntries) {
+                    BeaconMetrics.increment(EVICTIONS);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    boolean enabled() {
+        return maxEntries > 0;
+    }
+
+    synchronized BeaconResponse get(String action, long version, String key) {
+        evictStaleVersions(action, version);
+        CachedResponse entry = entries.get(key);
+        long now = System.currentTimeMillis();
+        if (entry == null || entry.version != version || now >= entry.expiresAt) {
+            if (entry != null) {
+                entries.remove(key);
+            }
+            BeaconMetrics.increment(MISSES);
+            return null;
+        }
+        BeaconMetrics.increment(HITS);
+        return entry.response;
+    }
+
+    synchronized void put(String action, long version, String key, BeaconResponse response, long ttlMillis) {
+        evictStaleVersions(action, version);
+        entries.put(key, new CachedResponse(action, version, response, System.currentTimeMillis() + ttlMillis));
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        latestVersions.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void evictStaleVersions(String action, long version) {
+        Long latest = latestVersions.put(action, version);
+        if (latest == null || latest == version) {
+            return;
+        }
+        Iterator<CachedResponse> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            CachedResponse entry = iterator.next();
+            if (entry.action.equals(action) && entry.version != version) {
+                iterator.remove();
+                BeaconMetrics.increment(EVICTIONS);
+            }
+        }
+    }
+
+    private static final class CachedResponse {
+        private final String action;
+        private final long version;
+        private final BeaconResponse response;
+        private final long expiresAt;
+
+        private CachedResponse(String action, long version, BeaconResponse response, long expiresAt) {
+            this.action = action;
+            this.version = version;
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.hydroline.beacon.provider.service;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs resumable work on the server thread for at most a fixed budget per tick. Each call records
+ * {@code <prefix>.ticks} and {@code <prefix>.steps}; ticks that ran past the budget (a single step cannot be
+ * interrupted) add to {@code <prefix>.overruns} and {@code <prefix>.overrunMicros}.
+ */
+public final class TickBudget {
+    private final String prefix;
+    private final long budgetNanos;
+
+    public TickBudget(String prefix, long budgetMillis) {
+        this.prefix = Objects.requireNonNull(prefix, "prefix");
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, budgetMillis));
+    }
+
+    /**
+     * Calls {@code step} until it returns {@code false} or the budget is spent.
+     *
+     * @return {@code true} if the work completed during this call.
+     */
+    public boolean run(BooleanSupplier step) {
+        long started = System.nanoTime();
+        long deadline = started + budgetNanos;
+        int steps = 0;
+        boolean more;
+        do {
+            more = step.getAsBoolean();
+            steps++;
+        } while (more && System.nanoTime() - deadline < 0L);
+        long elapsed = System.nanoTime() - started;
+        BeaconMetrics.increment(metric("ticks"));
+        BeaconMetrics.add(metric("steps"), steps);
+        if (elapsed > budgetNanos) {
+            BeaconMetrics.increment(metric("overruns"));
+            BeaconMetrics.add(metric("overrunMicros"), TimeUnit.NANOSECONDS.toMicros(elapsed - budgetNanos));
+        }
+        return !more;
+    }
+
+    public String metric(String name) {
+        return prefix + '.' + name;
+    }
+}
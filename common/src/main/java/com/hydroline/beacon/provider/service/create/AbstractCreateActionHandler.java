@@ -7,10 +7,24 @@ import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import com.hydroline.beacon.provider.protocol.ResultCode;
 
 abstract class AbstractCreateActionHandler implements com.hydroline.beacon.provider.service.BeaconActionHandler {
+    @Override
+    public boolean readOnly() {
+        return true;
+    }
+
     protected CreateQueryGateway gateway() {
         return CreateQueryRegistry.get();
     }
 
+    /**
+     * Create data carries no version of its own; the pin id keeps a request running against a pinned view (see
+     * {@code beacon:batch}) from joining a computation on the live gateway.
+     */
+    @Override
+    public long dataVersion() {
+        return gateway().pinId();
+    }
+
     protected BeaconResponse notReady(String requestId) {
         return BeaconResponse.builder(requestId)
             .result(ResultCode.NOT_READY)
@@ -32,6 +46,12 @@ abstract class AbstractCreateActionHandler implements com.hydroline.beacon.provi
             .build();
     }
 
+    protected BeaconResponse notModified(String requestId) {
+        return BeaconResponse.builder(requestId)
+            .result(ResultCode.NOT_MODIFIED)
+            .build();
+    }
+
     protected BeaconResponse error(String requestId, String reason) {
         return BeaconResponse.builder(requestId)
             .result(ResultCode.ERROR)
@@ -7,6 +7,7 @@ import com.hydroline.beacon.provider.create.CreateQueryGateway;
 import com.hydroline.beacon.provider.protocol.BeaconMessage;
 import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import com.hydroline.beacon.provider.transport.TransportContext;
+import com.hydroline.beacon.provider.util.ContentVersion;
 import java.util.Optional;
 
 public final class CreateGetNetworkActionHandler extends AbstractCreateActionHandler {
@@ -26,12 +27,17 @@ public final class CreateGetNetworkActionHandler extends AbstractCreateActionHan
         JsonObject payload = message.getPayload();
         String graphId = payload != null && payload.has("graphId") ? payload.get("graphId").getAsString() : null;
         boolean includePolylines = payload == null || !payload.has("includePolylines") || payload.get("includePolylines").getAsBoolean();
+        Optional<String> version = gateway.fetchNetworkVersion(graphId);
+        if (version.isPresent() && ContentVersion.matches(payload, version.get())) {
+            return notModified(message.getRequestId());
+        }
         Optional<CreateNetworkSnapshot> snapshot = gateway.fetchNetworkSnapshot(graphId, includePolylines);
         if (graphId != null && !snapshot.isPresent()) {
             return invalidPayload(message.getRequestId(), "unknown graphId");
         }
         CreateNetworkSnapshot networkSnapshot = snapshot.orElseGet(() -> new CreateNetworkSnapshot(null, null, null, null, null, null, null));
         JsonObject responsePayload = CreateJsonWriter.writeNetworkSnapshot(networkSnapshot, includePolylines);
+        version.ifPresent(etag -> responsePayload.addProperty("etag", etag));
         return ok(message.getRequestId(), responsePayload);
     }
 }
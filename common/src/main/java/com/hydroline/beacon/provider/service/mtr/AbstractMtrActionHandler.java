@@ -8,6 +8,16 @@ import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import com.hydroline.beacon.provider.protocol.ResultCode;
 
 abstract class AbstractMtrActionHandler implements com.hydroline.beacon.provider.service.BeaconActionHandler {
+    @Override
+    public boolean readOnly() {
+        return true;
+    }
+
+    @Override
+    public long dataVersion() {
+        return gateway().dataVersion();
+    }
+
     protected MtrQueryGateway gateway() {
         return MtrQueryRegistry.get();
     }
@@ -33,6 +43,12 @@ abstract class AbstractMtrActionHandler implements com.hydroline.beacon.provider
             .build();
     }
 
+    protected BeaconResponse notModified(String requestId) {
+        return BeaconResponse.builder(requestId)
+            .result(ResultCode.NOT_MODIFIED)
+            .build();
+    }
+
     protected BeaconResponse busy(String requestId, String reason) {
         return BeaconResponse.builder(requestId)
             .result(ResultCode.BUSY)
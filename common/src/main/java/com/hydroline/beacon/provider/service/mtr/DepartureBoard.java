@@ -0,0 +1,287 @@
+package com.hydroline.beacon.provider.service.mtr;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hydroline.beacon.provider.mtr.MtrModels.PlatformTimetable;
+import com.hydroline.beacon.provider.mtr.MtrModels.ScheduleEntry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Persistent departure board behind {@code mtr:get_all_station_schedules}. Each station's JSON is kept together
+ * with its arrival vector (per platform: the id and, per entry, the arrival time plus a digest of the other fields);
+ * a pass only rewrites stations whose vector or dimension labels changed. The board version advances on every pass
+ * that changed something, and recent removals are remembered so clients can ask for the stations changed since a
+ * version.
+ */
+final class DepartureBoard {
+    private final int historyVersions;
+    private long version;
+    private long dataVersion = -1L;
+    // deltas are only possible from versions at or after this one
+    private long oldestDeltaBase;
+    private Map<String, DimensionState> dimensions = new LinkedHashMap<>();
+    private final Map<String, Long> removedDimensions = new HashMap<>();
+
+    DepartureBoard(int historyVersions) {
+        this.historyVersions = Math.max(1, historyVersions);
+    }
+
+    /**
+     * @return {@code true} if the board was last refreshed from {@code dataVersion} and can be served as is.
+     */
+    synchronized boolean isCurrent(long dataVersion) {
+        return this.dataVersion == dataVersion;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * @return the stations of {@code dimension} from the last pass, keyed by station id; empty if unknown.
+     */
+    synchronized Map<Long, Slot> previous(String dimension) {
+        DimensionState state = dimensions.get(dimension);
+        return state == null ? Collections.<Long, Slot>emptyMap() : state.stations;
+    }
+
+    synchronized long labelHash(String dimension) {
+        DimensionState state = dimensions.get(dimension);
+        return state == null ? 0L : state.labelHash;
+    }
+
+    /**
+     * Replaces the board with the result of a pass over every dimension.
+     *
+     * @param passes dimension id to the pass result, in output order.
+     */
+    synchronized void commit(long dataVersion, Map<String, DimensionPass> passes) {
+        long next = version + 1L;
+        boolean changed = false;
+        Map<String, DimensionState> updated = new LinkedHashMap<>();
+        for (Map.Entry<String, DimensionPass> entry : passes.entrySet()) {
+            DimensionPass pass = entry.getValue();
+            DimensionState previous = dimensions.get(entry.getKey());
+            Map<Long, Slot> stations = new LinkedHashMap<>();
+            for (StationResult result : pass.stations) {
+                if (result.json == null) {
+                    continue;
+                }
+                Slot slot = previous == null ? null : previous.stations.get(result.stationId);
+                if (slot == null || slot.json != result.json) {
+                    slot = new Slot(result.stationId, result.vector, result.json, next);
+                    changed = true;
+                }
+                stations.put(result.stationId, slot);
+            }
+            Map<Long, Long> removed = previous == null ? new HashMap<Long, Long>() : new HashMap<>(previous.removed);
+            removed.keySet().removeAll(stations.keySet());
+            if (previous != null) {
+                for (Long stationId : previous.stations.keySet()) {
+                    if (!stations.containsKey(stationId)) {
+                        removed.put(stationId, next);
+                        changed = true;
+                    }
+                }
+            }
+            if (previous == null && removedDimensions.remove(entry.getKey()) != null) {
+                changed = true;
+            }
+            updated.put(entry.getKey(), new DimensionState(pass.labelHash, stations, removed));
+        }
+        for (String dimension : dimensions.keySet()) {
+            if (!updated.containsKey(dimension)) {
+                removedDimensions.put(dimension, next);
+                changed = true;
+            }
+        }
+        dimensions = updated;
+        this.dataVersion = dataVersion;
+        if (changed) {
+            version = next;
+            prune();
+        }
+    }
+
+    /**
+     * @return whether a delta from {@code since} can be produced.
+     */
+    synchronized boolean canDelta(long since) {
+        return since >= oldestDeltaBase && since <= version;
+    }
+
+    /**
+     * Writes the {@code dimensions} array: every station, or with {@code since} only the stations changed after that
+     * version plus {@code removedStationIds}. Dimensions without content are omitted.
+     *
+     * @param filter dimension to include, or {@code null} for all.
+     */
+    synchronized JsonArray write(String filter, Long since) {
+        JsonArray array = new JsonArray();
+        for (Map.Entry<String, DimensionState> entry : dimensions.entrySet()) {
+            if (filter != null && !filter.equals(entry.getKey())) {
+                continue;
+            }
+            DimensionState state = entry.getValue();
+            JsonArray stations = new JsonArray();
+            for (Slot slot : state.stations.values()) {
+                if (since == null || slot.changedAt > since) {
+                    stations.add(slot.json);
+                }
+            }
+            JsonArray removed = new JsonArray();
+            if (since != null) {
+                for (Map.Entry<Long, Long> removal : state.removed.entrySet()) {
+                    if (removal.getValue() > since) {
+                        removed.add(removal.getKey());
+                    }
+                }
+            }
+            if (stations.size() == 0 && removed.size() == 0) {
+                continue;
+            }
+            JsonObject dimensionJson = new JsonObject();
+            dimensionJson.addProperty("dimension", entry.getKey());
+            dimensionJson.add("stations", stations);
+            if (since != null) {
+                dimensionJson.add("removedStationIds", removed);
+            }
+            array.add(dimensionJson);
+        }
+        return array;
+    }
+
+    synchronized JsonArray removedDimensions(String filter, long since) {
+        JsonArray array = new JsonArray();
+        for (Map.Entry<String, Long> entry : removedDimensions.entrySet()) {
+            if (entry.getValue() > since && (filter == null || filter.equals(entry.getKey()))) {
+                array.add(entry.getKey());
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Arrival vector of a station: its name digest, then per platform the id, entry count and per entry the arrival
+     * time and a digest of the remaining fields that end up in the JSON.
+     */
+    static long[] arrivalVector(String stationName, List<PlatformTimetable> platforms) {
+        int size = 1;
+        for (PlatformTimetable platform : platforms) {
+            size += 2 + platform.getEntries().size() * 2;
+        }
+        long[] vector = new long[size];
+        int index = 0;
+        vector[index++] = Objects.hashCode(stationName);
+        for (PlatformTimetable platform : platforms) {
+            vector[index++] = platform.getPlatformId();
+            vector[index++] = platform.getEntries().size();
+            for (ScheduleEntry entry : platform.getEntries()) {
+                vector[index++] = entry.getArrivalMillis();
+                vector[index++] = digest(entry);
+            }
+        }
+        return vector;
+    }
+
+    private static long digest(ScheduleEntry entry) {
+        long hash = entry.getRouteId();
+        hash = hash * 31L + entry.getTrainCars();
+        hash = hash * 31L + entry.getCurrentStationIndex();
+        hash = hash * 31L + entry.getDelayMillis().hashCode();
+        hash = hash * 31L + entry.getRouteName().hashCode();
+        hash = hash * 31L + entry.getDestination().hashCode();
+        hash = hash * 31L + entry.getRouteLabel().hashCode();
+        hash = hash * 31L + entry.getCircular().hashCode();
+        hash = hash * 31L + entry.getRouteColor().hashCode();
+        return hash;
+    }
+
+    private void prune() {
+        long horizon = version - historyVersions;
+        Iterator<Map.Entry<String, Long>> dimensionRemovals = removedDimensions.entrySet().iterator();
+        while (dimensionRemovals.hasNext()) {
+            long removedAt = dimensionRemovals.next().getValue();
+            if (removedAt <= horizon) {
+                oldestDeltaBase = Math.max(oldestDeltaBase, removedAt);
+                dimensionRemovals.remove();
+            }
+        }
+        for (DimensionState state : dimensions.values()) {
+            Iterator<Map.Entry<Long, Long>> stationRemovals = state.removed.entrySet().iterator();
+            while (stationRemovals.hasNext()) {
+                long removedAt = stationRemovals.next().getValue();
+                if (removedAt <= horizon) {
+                    oldestDeltaBase = Math.max(oldestDeltaBase, removedAt);
+                    stationRemovals.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * A station as last written: {@code json} is shared across responses and must not be modified.
+     */
+    static final class Slot {
+        final long stationId;
+        final long[] vector;
+        final JsonObject json;
+        final long changedAt;
+
+        private Slot(long stationId, long[] vector, JsonObject json, long changedAt) {
+            this.stationId = stationId;
+            this.vector = vector;
+            this.json = json;
+            this.changedAt = changedAt;
+        }
+
+        boolean matches(long[] candidate) {
+            return Arrays.equals(vector, candidate);
+        }
+    }
+
+    /**
+     * One station from a pass; {@code json} is the previous slot's instance when it was reused, {@code null} when the
+     * station has no schedules.
+     */
+    static final class StationResult {
+        final long stationId;
+        final long[] vector;
+        final JsonObject json;
+
+        StationResult(long stationId, long[] vector, JsonObject json) {
+            this.stationId = stationId;
+            this.vector = vector;
+            this.json = json;
+        }
+    }
+
+    static final class DimensionPass {
+        final long labelHash;
+        final List<StationResult> stations;
+
+        DimensionPass(long labelHash, List<StationResult> stations) {
+            this.labelHash = labelHash;
+            this.stations = stations;
+        }
+    }
+
+    private static final class DimensionState {
+        private final long labelHash;
+        private final Map<Long, Slot> stations;
+        private final Map<Long, Long> removed;
+
+        private DimensionState(long labelHash, Map<Long, Slot> stations, Map<Long, Long> removed) {
+            this.labelHash = labelHash;
+            this.stations = Collections.unmodifiableMap(stations);
+            this.removed = removed;
+        }
+    }
+}
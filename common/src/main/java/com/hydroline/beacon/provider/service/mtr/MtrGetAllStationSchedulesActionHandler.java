@@ -15,42 +15,82 @@ import com.hydroline.beacon.provider.mtr.MtrModels.StationTimetable;
 import com.hydroline.beacon.provider.mtr.MtrQueryGateway;
 import com.hydroline.beacon.provider.protocol.BeaconMessage;
 import com.hydroline.beacon.provider.protocol.BeaconResponse;
+import com.hydroline.beacon.provider.service.BeaconMetrics;
+import com.hydroline.beacon.provider.service.RequestDeadline;
 import com.hydroline.beacon.provider.transport.TransportContext;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeoutException;
 
 public final class MtrGetAllStationSchedulesActionHandler extends AbstractMtrActionHandler {
     public static final String ACTION = "mtr:get_all_station_schedules";
+    private static final long CACHE_TTL_MILLIS = Long.getLong("beacon.cacheTtl.allStationSchedulesMs", 2000L);
+    private static final int SCHEDULE_COST = Integer.getInteger("beacon.scheduleCost.allStationSchedules", 2);
+    private static final int STATIONS_PER_TASK = 16;
+    private static final String BOARD_REUSED = "board.stations.reused";
+    private static final String BOARD_REWRITTEN = "board.stations.rewritten";
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+        Math.max(1, Integer.getInteger("beacon.scheduleParallelism",
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1))),
+        pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("beacon-mtr-schedule-fj-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        },
+        null,
+        false);
+    private static final String SINCE = "since";
+
+    private final DepartureBoard board = new DepartureBoard(Integer.getInteger("beacon.boardHistoryVersions", 64));
+    // one refresh at a time, so concurrent passes neither duplicate work nor commit out of order
+    private final Object refreshLock = new Object();
 
     @Override
     public String action() {
         return ACTION;
     }
 
+    @Override
+    public long cacheTtlMillis() {
+        return CACHE_TTL_MILLIS;
+    }
+
     @Override
     public BeaconResponse handle(BeaconMessage message, TransportContext context) {
         MtrQueryGateway gateway = gateway();
         if (!gateway.isReady()) {
             return notReady(message.getRequestId());
         }
-        String dimension = message.getPayload() != null && message.getPayload().has("dimension")
-            ? message.getPayload().get("dimension").getAsString()
+        JsonObject payload = message.getPayload();
+        String dimension = payload != null && payload.has("dimension")
+            ? payload.get("dimension").getAsString()
+            : null;
+        String since = payload != null && payload.has(SINCE) && !payload.get(SINCE).isJsonNull()
+            ? payload.get(SINCE).getAsString()
             : null;
 
+        RequestDeadline deadline = RequestDeadline.of(payload, context);
         try {
-            return MtrScheduleRequestQueue.submit(ACTION, () -> buildAllStationSchedulesResponse(
-                message.getRequestId(),
-                gateway,
-                dimension
-            ));
+            return MtrScheduleRequestQueue.submit(ACTION, context.getOriginId(), SCHEDULE_COST, deadline,
+                () -> buildAllStationSchedulesResponse(
+                    message.getRequestId(),
+                    gateway,
+                    dimension,
+                    since,
+                    deadline
+                ));
         } catch (MtrScheduleRequestQueue.QueueRejectedException e) {
             BeaconProviderMod.LOGGER.warn("Rejecting {} request", ACTION, e);
             return busy(message.getRequestId(), "schedule requests are busy right now");
@@ -69,66 +109,201 @@ public final class MtrGetAllStationSchedulesActionHandler extends AbstractMtrAct
 
     private BeaconResponse buildAllStationSchedulesResponse(String requestId,
             MtrQueryGateway gateway,
-            String dimension) {
-        List<MtrDimensionSnapshot> snapshots = gateway.fetchSnapshots();
-        List<DimensionOverview> overviews = gateway.fetchNetworkOverview();
+            String dimension,
+            String since,
+            RequestDeadline deadline) {
+        // every read of the pass, including the fork/join tasks, sees one published model
+        MtrQueryGateway pinned = gateway.pinned();
+        List<MtrDimensionSnapshot> snapshots = pinned.fetchSnapshots();
+        List<DimensionOverview> overviews = pinned.fetchNetworkOverview();
         Set<String> dimensions = collectTargetDimensions(dimension, snapshots, overviews);
         if (dimensions.isEmpty()) {
             return invalidPayload(requestId, "no registered dimensions");
         }
-
-        JsonArray dimensionArray = new JsonArray();
-        for (String dimId : dimensions) {
-            List<StationInfo> stations = gateway.fetchStations(dimId);
-            if (stations == null || stations.isEmpty()) {
-                continue;
-            }
-            Map<Long, String> platformNames = buildPlatformNameIndex(stations);
-            Map<Long, String> routeNames = buildRouteNameIndex(dimId, overviews);
-            JsonArray stationArray = new JsonArray();
-            for (StationInfo station : stations) {
-                if (station == null) {
-                    continue;
-                }
-                Optional<StationTimetable> optional = gateway.fetchStationTimetable(dimId, station.getStationId(), null);
-                if (!optional.isPresent()) {
-                    continue;
-                }
-                StationTimetable timetable = optional.get();
-                JsonArray platformArray = writePlatformSchedules(
-                    timetable.getPlatforms(),
-                    platformNames,
-                    routeNames
-                );
-                if (platformArray.size() == 0) {
-                    continue;
+        long dataVersion = pinned.dataVersion();
+        if (!board.isCurrent(dataVersion)) {
+            synchronized (refreshLock) {
+                // another worker may have refreshed from this version while we waited
+                if (!board.isCurrent(dataVersion)) {
+                    refreshBoard(pinned, dataVersion, collectTargetDimensions(null, snapshots, overviews), overviews,
+                        deadline);
                 }
-                JsonObject stationJson = new JsonObject();
-                stationJson.addProperty("stationId", station.getStationId());
-                stationJson.addProperty("stationName", station.getName());
-                stationJson.add("platforms", platformArray);
-                stationArray.add(stationJson);
             }
-            if (stationArray.size() == 0) {
-                continue;
-            }
-            JsonObject dimensionJson = new JsonObject();
-            dimensionJson.addProperty("dimension", dimId);
-            dimensionJson.add("stations", stationArray);
-            dimensionArray.add(dimensionJson);
         }
+
+        Long base = parseBoardVersion(since);
+        boolean delta = base != null && board.canDelta(base);
+        String filter = dimension == null || dimension.isEmpty() ? null : dimension;
+        long boardVersion = board.version();
+        JsonArray dimensionArray = board.write(filter, delta ? base : null);
         JsonObject responsePayload = new JsonObject();
         responsePayload.addProperty("timestamp", System.currentTimeMillis());
-        if (dimension != null && !dimension.isEmpty()) {
+        if (filter != null) {
             responsePayload.addProperty("dimension", dimension);
         }
-        if (dimensionArray.size() == 0) {
+        responsePayload.addProperty("boardVersion", Long.toString(boardVersion));
+        if (since != null) {
+            responsePayload.addProperty("mode", delta ? "delta" : "full");
+        }
+        if (delta) {
+            responsePayload.addProperty("baseVersion", since);
+            responsePayload.add("removedDimensions", board.removedDimensions(filter, base));
+        } else if (dimensionArray.size() == 0) {
             responsePayload.addProperty("note", "no schedules available yet");
         }
         responsePayload.add("dimensions", dimensionArray);
         return ok(requestId, responsePayload);
     }
 
+    /**
+     * Runs one pass over every dimension; stations whose arrival vector is unchanged keep their previous JSON.
+     * A cancelled {@code deadline} aborts the pass with a {@link java.util.concurrent.CancellationException} before
+     * anything is committed.
+     */
+    private void refreshBoard(MtrQueryGateway gateway, long dataVersion, Set<String> dimensions,
+            List<DimensionOverview> overviews, RequestDeadline deadline) {
+        List<DimensionTask> tasks = new ArrayList<>(dimensions.size());
+        for (String dimId : dimensions) {
+            List<StationInfo> stations = gateway.fetchStations(dimId);
+            if (stations == null || stations.isEmpty()) {
+                continue;
+            }
+            tasks.add(new DimensionTask(gateway, dimId, stations, buildRouteNameIndex(dimId, overviews),
+                board.previous(dimId), board.labelHash(dimId), deadline));
+        }
+        // one task per dimension, each split further by station range; joined in submission order
+        POOL.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        Map<String, DepartureBoard.DimensionPass> passes = new LinkedHashMap<>();
+        for (DimensionTask task : tasks) {
+            passes.put(task.dimension, task.pass());
+        }
+        board.commit(dataVersion, passes);
+    }
+
+    private static Long parseBoardVersion(String since) {
+        if (since == null || since.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(since);
+        } catch (NumberFormatException ignored) {
+            return null;
+        }
+    }
+
+    private static JsonObject writeStation(StationInfo station, List<PlatformTimetable> platforms,
+            Map<Long, String> platformNames, Map<Long, String> routeNames) {
+        JsonArray platformArray = writePlatformSchedules(platforms, platformNames, routeNames);
+        if (platformArray.size() == 0) {
+            return null;
+        }
+        JsonObject stationJson = new JsonObject();
+        stationJson.addProperty("stationId", station.getStationId());
+        stationJson.addProperty("stationName", station.getName());
+        stationJson.add("platforms", platformArray);
+        return stationJson;
+    }
+
+    /**
+     * Fills one result per station, so the merge keeps the station order no matter which worker finished first.
+     */
+    private static final class DimensionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MtrQueryGateway gateway;
+        private final String dimension;
+        private final List<StationInfo> stations;
+        private final Map<Long, String> platformNames;
+        private final Map<Long, String> routeNames;
+        private final Map<Long, DepartureBoard.Slot> previous;
+        private final long labelHash;
+        private final boolean labelsUnchanged;
+        private final DepartureBoard.StationResult[] results;
+        private final RequestDeadline deadline;
+
+        private DimensionTask(MtrQueryGateway gateway, String dimension, List<StationInfo> stations,
+                Map<Long, String> routeNames, Map<Long, DepartureBoard.Slot> previous, long previousLabelHash,
+                RequestDeadline deadline) {
+            this.gateway = gateway;
+            this.dimension = dimension;
+            this.stations = stations;
+            this.platformNames = buildPlatformNameIndex(stations);
+            this.routeNames = routeNames;
+            this.previous = previous;
+            this.labelHash = platformNames.hashCode() * 31L + routeNames.hashCode();
+            this.labelsUnchanged = !previous.isEmpty() && labelHash == previousLabelHash;
+            this.results = new DepartureBoard.StationResult[stations.size()];
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute() {
+            new StationRangeTask(this, 0, stations.size()).compute();
+        }
+
+        private DepartureBoard.StationResult compute(StationInfo station) {
+            if (station == null) {
+                return null;
+            }
+            Optional<StationTimetable> timetable = gateway.fetchStationTimetable(dimension, station.getStationId(), null);
+            if (!timetable.isPresent()) {
+                return null;
+            }
+            List<PlatformTimetable> platforms = timetable.get().getPlatforms();
+            long[] vector = DepartureBoard.arrivalVector(station.getName(), platforms);
+            DepartureBoard.Slot slot = previous.get(station.getStationId());
+            if (labelsUnchanged && slot != null && slot.matches(vector)) {
+                BeaconMetrics.increment(BOARD_REUSED);
+                return new DepartureBoard.StationResult(station.getStationId(), vector, slot.json);
+            }
+            BeaconMetrics.increment(BOARD_REWRITTEN);
+            JsonObject json = writeStation(station, platforms, platformNames, routeNames);
+            return new DepartureBoard.StationResult(station.getStationId(), vector, json);
+        }
+
+        private DepartureBoard.DimensionPass pass() {
+            List<DepartureBoard.StationResult> stationResults = new ArrayList<>(results.length);
+            for (DepartureBoard.StationResult result : results) {
+                if (result != null) {
+                    stationResults.add(result);
+                }
+            }
+            return new DepartureBoard.DimensionPass(labelHash, stationResults);
+        }
+    }
+
+    private static final class StationRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final DimensionTask owner;
+        private final int from;
+        private final int to;
+
+        private StationRangeTask(DimensionTask owner, int from, int to) {
+            this.owner = owner;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= STATIONS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    owner.deadline.checkNotCancelled();
+                    owner.results[i] = owner.compute(owner.stations.get(i));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new StationRangeTask(owner, from, mid), new StationRangeTask(owner, mid, to));
+        }
+    }
+
     private static Set<String> collectTargetDimensions(String requestedDimension,
             List<MtrDimensionSnapshot> snapshots,
             List<DimensionOverview> overviews) {
@@ -2,24 +2,52 @@ package com.hydroline.beacon.provider.service.mtr;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import com.hydroline.beacon.provider.mtr.MtrDimensionSnapshot;
 import com.hydroline.beacon.provider.mtr.MtrQueryGateway;
-import com.hydroline.beacon.provider.mtr.RailwayDataSerializer;
+import com.hydroline.beacon.provider.mtr.PackedRailwayData;
 import com.hydroline.beacon.provider.protocol.BeaconMessage;
 import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import com.hydroline.beacon.provider.transport.TransportContext;
+import com.hydroline.beacon.provider.transport.TransportKind;
+import com.hydroline.beacon.provider.util.ContentVersion;
 import com.hydroline.beacon.provider.util.PayloadChunker;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public final class MtrGetRailwaySnapshotActionHandler extends AbstractMtrActionHandler {
     public static final String ACTION = "mtr:get_railway_snapshot";
+    private static final long CACHE_TTL_MILLIS = Long.getLong("beacon.cacheTtl.railwaySnapshotMs", 5000L);
+    private static final int HISTORY_VERSIONS = Integer.getInteger("beacon.snapshotHistoryVersions", 8);
+    private static final String SINCE = "since";
+
+    private final RailwaySnapshotHistory history = new RailwaySnapshotHistory(HISTORY_VERSIONS);
+    private final RailwaySnapshotByteCache byteCache = RailwaySnapshotByteCache.fromSystemProperties();
 
     @Override
     public String action() {
         return ACTION;
     }
 
+    @Override
+    public long cacheTtlMillis() {
+        return CACHE_TTL_MILLIS;
+    }
+
+    /**
+     * The snapshot is the RailwayData packed during capture, so it follows the railway version rather than the publish
+     * counter; the response and byte caches then survive publishes that only moved trains.
+     */
+    @Override
+    public long dataVersion() {
+        return gateway().railwayVersion();
+    }
+
     @Override
     public BeaconResponse handle(BeaconMessage message, TransportContext context) {
         MtrQueryGateway gateway = gateway();
@@ -30,32 +58,149 @@ public final class MtrGetRailwaySnapshotActionHandler extends AbstractMtrActionH
         String requestedDimension = payload != null && payload.has("dimension")
             ? payload.get("dimension").getAsString()
             : null;
-        List<MtrDimensionSnapshot> snapshots = gateway.fetchSnapshots();
-        JsonArray serialized = new JsonArray();
-        long now = System.currentTimeMillis();
-        for (MtrDimensionSnapshot snapshot : snapshots) {
-            if (requestedDimension != null && !requestedDimension.equals(snapshot.getDimensionId())) {
-                continue;
-            }
-            byte[] data = RailwayDataSerializer.serialize(snapshot);
-            if (data.length == 0) {
+        // raw attachments can only be delivered by the gateway's RESPONSE_CHUNK stream
+        boolean stream = context.getKind() == TransportKind.NETTY_GATEWAY
+            && payload != null && payload.has("stream") && payload.get("stream").getAsBoolean();
+        String since = payload != null && payload.has(SINCE) && !payload.get(SINCE).isJsonNull()
+            ? payload.get(SINCE).getAsString()
+            : null;
+        List<PackedRailwayData> railwayData = gateway.fetchRailwayData();
+        long dataVersion = gateway.railwayVersion();
+        List<RailwaySnapshotByteCache.Entry> cached = new ArrayList<>();
+        List<PackedRailwayData> selected = new ArrayList<>();
+        ContentVersion version = ContentVersion.create();
+        for (PackedRailwayData packed : railwayData) {
+            if (requestedDimension != null && !requestedDimension.equals(packed.getDimensionId())) {
                 continue;
             }
-            JsonObject entry = new JsonObject();
-            entry.addProperty("dimension", snapshot.getDimensionId());
-            entry.addProperty("format", "messagepack");
-            entry.addProperty("timestamp", now);
-            entry.addProperty("length", data.length);
-            String encoded = Base64.getEncoder().encodeToString(data);
-            entry.add("payloadChunks", PayloadChunker.chunkEncodedPayload("base64", encoded, data.length));
-            serialized.add(entry);
-        }
-        if (requestedDimension != null && serialized.size() == 0) {
+            RailwaySnapshotByteCache.Entry entry = byteCache.get(packed, dataVersion);
+            cached.add(entry);
+            selected.add(entry.packed());
+            version.update(entry.packed().getContentHash());
+        }
+        if (requestedDimension != null && selected.isEmpty()) {
             return invalidPayload(message.getRequestId(), "unknown dimension");
         }
+        String etag = version.finish();
+        if (ContentVersion.matches(payload, etag)) {
+            return notModified(message.getRequestId());
+        }
+        Map<String, Map<String, Map<String, Long>>> base = null;
+        if (since != null) {
+            history.record(etag, selected);
+            base = since.isEmpty() ? null : history.get(since);
+        }
+        List<ByteBuffer> attachments = new ArrayList<>();
+        JsonArray serialized = new JsonArray();
+        Set<String> servedDimensions = new HashSet<>();
+        long now = System.currentTimeMillis();
+        try {
+            for (RailwaySnapshotByteCache.Entry cachedEntry : cached) {
+                PackedRailwayData packed = cachedEntry.packed();
+                JsonObject entry = new JsonObject();
+                entry.addProperty("dimension", packed.getDimensionId());
+                entry.addProperty("format", "messagepack");
+                entry.addProperty("timestamp", now);
+                byte[] data = null;
+                if (base != null) {
+                    Map<String, Set<String>> upserts = new HashMap<>();
+                    entry.add("changes", diff(packed, base.get(packed.getDimensionId()), upserts));
+                    data = packed.toBytes(upserts);
+                } else if (since != null) {
+                    entry.add("ids", ids(packed));
+                }
+                entry.addProperty("length", data != null ? data.length : packed.length());
+                if (stream) {
+                    entry.addProperty("attachment", attachments.size());
+                    attachments.add(data != null ? ByteBuffer.wrap(data) : packed.buffer());
+                } else if (data != null) {
+                    String encoded = Base64.getEncoder().encodeToString(data);
+                    entry.add("payloadChunks", PayloadChunker.chunkEncodedPayload("base64", encoded, data.length));
+                } else {
+                    entry.add("payloadChunks", cachedEntry.base64Chunks());
+                }
+                serialized.add(entry);
+                servedDimensions.add(packed.getDimensionId());
+            }
+        } catch (IOException ex) {
+            return error(message.getRequestId(), "Unable to serialize RailwayData: " + ex.getMessage());
+        }
         JsonObject responsePayload = new JsonObject();
         responsePayload.addProperty("format", "messagepack");
+        responsePayload.addProperty("etag", etag);
+        if (since != null) {
+            responsePayload.addProperty("mode", base != null ? "delta" : "full");
+        }
+        if (base != null) {
+            responsePayload.addProperty("baseEtag", since);
+            JsonArray removedDimensions = new JsonArray();
+            for (String dimension : base.keySet()) {
+                if (!servedDimensions.contains(dimension)
+                    && (requestedDimension == null || requestedDimension.equals(dimension))) {
+                    removedDimensions.add(dimension);
+                }
+            }
+            responsePayload.add("removedDimensions", removedDimensions);
+        }
         responsePayload.add("snapshots", serialized);
+        if (stream) {
+            return BeaconResponse.builder(message.getRequestId())
+                .payload(responsePayload)
+                .attachments(attachments)
+                .build();
+        }
         return ok(message.getRequestId(), responsePayload);
     }
+
+    /**
+     * Compares each dataset against the base hashes; ids of added or changed elements go into {@code upserts} (and
+     * the {@code upserted} arrays, in packing order), ids missing from the current data into {@code removed}.
+     */
+    private static JsonObject diff(PackedRailwayData packed, Map<String, Map<String, Long>> baseDimension,
+                                   Map<String, Set<String>> upserts) {
+        JsonObject changes = new JsonObject();
+        for (PackedRailwayData.Dataset dataset : packed.getDatasets()) {
+            Map<String, Long> baseHashes = baseDimension == null ? null : baseDimension.get(dataset.getName());
+            Set<String> current = new HashSet<>();
+            Set<String> changed = new HashSet<>();
+            JsonArray upserted = new JsonArray();
+            for (int i = 0; i < dataset.size(); i++) {
+                String id = dataset.getId(i);
+                current.add(id);
+                Long previous = baseHashes == null ? null : baseHashes.get(id);
+                if (previous == null || previous.longValue() != dataset.getHash(i)) {
+                    changed.add(id);
+                    upserted.add(id);
+                }
+            }
+            JsonArray removed = new JsonArray();
+            if (baseHashes != null) {
+                for (String id : baseHashes.keySet()) {
+                    if (!current.contains(id)) {
+                        removed.add(id);
+                    }
+                }
+            }
+            upserts.put(dataset.getName(), changed);
+            if (upserted.size() > 0 || removed.size() > 0) {
+                JsonObject datasetChanges = new JsonObject();
+                datasetChanges.add("upserted", upserted);
+                datasetChanges.add("removed", removed);
+                changes.add(dataset.getName(), datasetChanges);
+            }
+        }
+        return changes;
+    }
+
+    private static JsonObject ids(PackedRailwayData packed) {
+        JsonObject ids = new JsonObject();
+        for (PackedRailwayData.Dataset dataset : packed.getDatasets()) {
+            JsonArray values = new JsonArray();
+            for (int i = 0; i < dataset.size(); i++) {
+                values.add(dataset.getId(i));
+            }
+            ids.add(dataset.getName(), values);
+        }
+        return ids;
+    }
 }
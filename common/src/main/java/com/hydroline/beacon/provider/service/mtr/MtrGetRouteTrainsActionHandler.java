@@ -14,12 +14,18 @@ import java.util.List;
  */
 public final class MtrGetRouteTrainsActionHandler extends AbstractMtrActionHandler {
     public static final String ACTION = "mtr:get_route_trains";
+    private static final long CACHE_TTL_MILLIS = Long.getLong("beacon.cacheTtl.routeTrainsMs", 1000L);
 
     @Override
     public String action() {
         return ACTION;
     }
 
+    @Override
+    public long cacheTtlMillis() {
+        return CACHE_TTL_MILLIS;
+    }
+
     @Override
     public BeaconResponse handle(BeaconMessage message, TransportContext context) {
         MtrQueryGateway gateway = gateway();
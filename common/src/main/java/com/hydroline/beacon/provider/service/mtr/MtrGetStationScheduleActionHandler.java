@@ -4,18 +4,21 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.hydroline.beacon.provider.BeaconProviderMod;
 import com.hydroline.beacon.provider.mtr.MtrDimensionSnapshot;
-import com.hydroline.beacon.provider.mtr.MtrStationScheduleBuilder;
+import com.hydroline.beacon.provider.mtr.MtrJsonWriter;
 import com.hydroline.beacon.provider.mtr.MtrModels.DimensionOverview;
+import com.hydroline.beacon.provider.mtr.MtrModels.PlatformTimetable;
 import com.hydroline.beacon.provider.mtr.MtrModels.RouteSummary;
+import com.hydroline.beacon.provider.mtr.MtrModels.ScheduleEntry;
 import com.hydroline.beacon.provider.mtr.MtrModels.StationInfo;
 import com.hydroline.beacon.provider.mtr.MtrModels.StationPlatformInfo;
+import com.hydroline.beacon.provider.mtr.MtrModels.StationTimetable;
 import com.hydroline.beacon.provider.mtr.MtrQueryGateway;
 import com.hydroline.beacon.provider.protocol.BeaconMessage;
 import com.hydroline.beacon.provider.protocol.BeaconResponse;
+import com.hydroline.beacon.provider.service.RequestDeadline;
 import com.hydroline.beacon.provider.transport.TransportContext;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -26,12 +29,19 @@ import java.util.concurrent.TimeoutException;
 
 public final class MtrGetStationScheduleActionHandler extends AbstractMtrActionHandler {
     public static final String ACTION = "mtr:get_station_schedule";
+    private static final long CACHE_TTL_MILLIS = Long.getLong("beacon.cacheTtl.stationScheduleMs", 2000L);
+    private static final int SCHEDULE_COST = Integer.getInteger("beacon.scheduleCost.stationSchedule", 1);
 
     @Override
     public String action() {
         return ACTION;
     }
 
+    @Override
+    public long cacheTtlMillis() {
+        return CACHE_TTL_MILLIS;
+    }
+
     @Override
     public BeaconResponse handle(BeaconMessage message, TransportContext context) {
         MtrQueryGateway gateway = gateway();
@@ -47,7 +57,8 @@ public final class MtrGetStationScheduleActionHandler extends AbstractMtrActionH
         Long platformId = payload.has("platformId") ? payload.get("platformId").getAsLong() : null;
 
         try {
-            return MtrScheduleRequestQueue.submit(ACTION, () -> buildStationScheduleResponse(
+            return MtrScheduleRequestQueue.submit(ACTION, context.getOriginId(), SCHEDULE_COST,
+                RequestDeadline.of(payload, context), () -> buildStationScheduleResponse(
                 message.getRequestId(),
                 gateway,
                 stationId,
@@ -75,29 +86,26 @@ public final class MtrGetStationScheduleActionHandler extends AbstractMtrActionH
             long stationId,
             String dimension,
             Long platformId) {
-        List<MtrDimensionSnapshot> snapshots = gateway.fetchSnapshots();
-        List<DimensionOverview> overviews = gateway.fetchNetworkOverview();
+        MtrQueryGateway pinned = gateway.pinned();
+        List<MtrDimensionSnapshot> snapshots = pinned.fetchSnapshots();
+        List<DimensionOverview> overviews = pinned.fetchNetworkOverview();
         Set<String> targetDimensions = collectTargetDimensions(dimension, snapshots, overviews);
         if (targetDimensions.isEmpty()) {
             return invalidPayload(requestId, "no registered dimensions");
         }
 
-        Map<String, Map<Long, String>> platformNamesByDimension = buildPlatformNameIndex(gateway.fetchStations(null));
-        Map<String, MtrDimensionSnapshot> snapshotsByDimension = indexSnapshots(snapshots);
+        Map<String, Map<Long, String>> platformNamesByDimension = buildPlatformNameIndex(pinned.fetchStations(null));
 
         JsonArray timetablesArray = new JsonArray();
         for (String dimId : targetDimensions) {
-            MtrDimensionSnapshot snapshot = snapshotsByDimension.get(dimId);
-            if (snapshot == null) {
+            // timetables captured on the server thread; the live RailwayData is never read here
+            Optional<StationTimetable> timetable = pinned.fetchStationTimetable(dimId, stationId, platformId);
+            if (!timetable.isPresent()) {
                 continue;
             }
-            JsonArray platforms = MtrStationScheduleBuilder.build(
-                snapshot,
-                stationId,
-                platformId,
-                platformNamesByDimension.getOrDefault(dimId, Collections.emptyMap())
-            );
-            if (platforms == null || platforms.size() == 0) {
+            JsonArray platforms = writePlatforms(timetable.get().getPlatforms(),
+                platformNamesByDimension.getOrDefault(dimId, Collections.emptyMap()));
+            if (platforms.size() == 0) {
                 continue;
             }
             JsonObject entry = new JsonObject();
@@ -119,6 +127,32 @@ public final class MtrGetStationScheduleActionHandler extends AbstractMtrActionH
         return ok(requestId, responsePayload);
     }
 
+    private static JsonArray writePlatforms(List<PlatformTimetable> platforms, Map<Long, String> platformNames) {
+        JsonArray array = new JsonArray();
+        for (PlatformTimetable platform : platforms) {
+            JsonArray entries = new JsonArray();
+            for (ScheduleEntry scheduleEntry : platform.getEntries()) {
+                JsonObject entry = MtrJsonWriter.writeScheduleEntry(scheduleEntry, null);
+                if (entry.has("routeName")) {
+                    entry.add("name", entry.get("routeName"));
+                }
+                entries.add(entry);
+            }
+            if (entries.size() == 0) {
+                continue;
+            }
+            JsonObject platformJson = new JsonObject();
+            platformJson.addProperty("platformId", platform.getPlatformId());
+            String platformName = platformNames.get(platform.getPlatformId());
+            if (platformName != null && !platformName.isEmpty()) {
+                platformJson.addProperty("platformName", platformName);
+            }
+            platformJson.add("entries", entries);
+            array.add(platformJson);
+        }
+        return array;
+    }
+
     private static Set<String> collectTargetDimensions(String requestedDimension,
             List<MtrDimensionSnapshot> snapshots,
             List<DimensionOverview> overviews) {
@@ -161,19 +195,4 @@ public final class MtrGetStationScheduleActionHandler extends AbstractMtrActionH
         }
         return index;
     }
-
-    private static Map<String, MtrDimensionSnapshot> indexSnapshots(List<MtrDimensionSnapshot> snapshots) {
-        Map<String, MtrDimensionSnapshot> index = new LinkedHashMap<>();
-        if (snapshots == null) {
-            return index;
-        }
-        for (MtrDimensionSnapshot snapshot : snapshots) {
-            if (snapshot != null) {
-                index.putIfAbsent(snapshot.getDimensionId(), snapshot);
-            }
-        }
-        return index;
-    }
-
-    // This handler now delegates to {@link MtrStationScheduleBuilder} and no longer builds JSON directly.
 }
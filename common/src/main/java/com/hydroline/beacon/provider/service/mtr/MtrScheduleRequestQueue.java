@@ -1,97 +1,239 @@
 package com.hydroline.beacon.provider.service.mtr;
 
 import com.hydroline.beacon.provider.BeaconProviderMod;
-import java.util.concurrent.BlockingQueue;
+import com.hydroline.beacon.provider.service.BeaconMetrics;
+import com.hydroline.beacon.provider.service.RequestDeadline;
+import com.hydroline.beacon.provider.util.NamedThreadFactory;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Serializes heavy schedule requests so we only run one at a time and keep a fixed delay between them.
+ * Fair scheduler for heavy schedule requests. Each origin ({@code TransportContext.getOriginId()}) has its own
+ * queue, served by deficit round robin so a request's cost (an all-stations pass weighs more than one station)
+ * counts against its origin's share. Dispatch is paced by a token bucket refilled every
+ * {@code beacon.scheduleRateLimitMs}; when tokens run out the dispatcher re-arms a timer instead of sleeping.
+ * Requests run on {@code beacon.scheduleWorkers} workers. A job whose {@link RequestDeadline} passed while it was
+ * queued is dropped without running; when the caller stops waiting, the deadline is cancelled so the running task
+ * can stop at its next check.
  */
 final class MtrScheduleRequestQueue {
     private static final long RATE_LIMIT_INTERVAL_MS = Long.getLong("beacon.scheduleRateLimitMs", 400L);
     private static final long REQUEST_TIMEOUT_MS = Long.getLong("beacon.scheduleRequestTimeoutMs", 30_000L);
+    private static final int WORKERS = Math.max(1, Integer.getInteger("beacon.scheduleWorkers", 2));
+    private static final int BUCKET_CAPACITY = Math.max(1, Integer.getInteger("beacon.scheduleBurst", 8));
     private static final int MAX_PENDING_REQUESTS = 64;
-    private static final BlockingQueue<Runnable> WORK_QUEUE = new LinkedBlockingQueue<>(MAX_PENDING_REQUESTS);
-    private static final ThreadPoolExecutor WORKER = new ThreadPoolExecutor(
-        1,
-        1,
-        0L,
-        TimeUnit.MILLISECONDS,
-        WORK_QUEUE,
-        new NamedThreadFactory("beacon-mtr-schedule")
-    );
+    private static final int MAX_PENDING_PER_ORIGIN = 16;
+    private static final int QUANTUM = 1;
 
-    private static final Object RATE_LOCK = new Object();
-    private static volatile long lastExecutionTimeMs = 0L;
+    private static final ExecutorService WORKER = Executors.newFixedThreadPool(WORKERS,
+        new NamedThreadFactory("beacon-mtr-schedule"));
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+        new NamedThreadFactory("beacon-mtr-schedule-timer"));
+
+    private static final Object LOCK = new Object();
+    // guarded by LOCK
+    private static final Map<UUID, OriginQueue> ORIGINS = new HashMap<>();
+    private static final ArrayDeque<OriginQueue> ROUND = new ArrayDeque<>();
+    private static int pending;
+    private static int running;
+    private static double tokens = BUCKET_CAPACITY;
+    private static long refilledAt = System.nanoTime();
+    private static boolean timerArmed;
 
     private MtrScheduleRequestQueue() {
     }
 
     /**
-     * Synchronously executes {@code task} after enqueuing it, applying rate limiting and timeouts.
+     * Synchronously executes {@code task} once its origin's turn comes and the rate limit allows, waiting at most
+     * {@code beacon.scheduleRequestTimeoutMs} or until {@code deadline}, whichever comes first.
+     *
+     * @param cost relative weight of the request; also the number of rate-limit tokens it consumes.
+     * @param deadline cancelled when this call gives up; {@code task} should poll it during long loops.
+     * @throws TimeoutException if the deadline passed before or while the task ran.
      */
-    public static <T> T submit(String label, Callable<T> task)
+    public static <T> T submit(String label, UUID originId, int cost, RequestDeadline deadline, Callable<T> task)
             throws InterruptedException, ExecutionException, TimeoutException, QueueRejectedException {
+        if (deadline.isExpired()) {
+            BeaconMetrics.increment(RequestDeadline.EXPIRED);
+            throw new TimeoutException(label + " deadline exceeded before queueing");
+        }
         CompletableFuture<T> completion = new CompletableFuture<>();
+        Job job = new Job(Math.max(1, Math.min(cost, BUCKET_CAPACITY)), deadline, () -> {
+            try {
+                completion.complete(task.call());
+            } catch (Throwable throwable) {
+                completion.completeExceptionally(throwable);
+            }
+        }, completion);
+        synchronized (LOCK) {
+            OriginQueue queue = ORIGINS.get(originId);
+            int queued = queue == null ? 0 : queue.jobs.size();
+            if (pending >= MAX_PENDING_REQUESTS || queued >= MAX_PENDING_PER_ORIGIN) {
+                BeaconMetrics.increment("schedule.rejected");
+                BeaconProviderMod.LOGGER.warn("Schedule queue full ({}). Pending={}, origin={}", label, pending, queued);
+                throw new QueueRejectedException(label);
+            }
+            if (queue == null) {
+                queue = new OriginQueue(originId);
+                ORIGINS.put(originId, queue);
+                ROUND.addLast(queue);
+            }
+            queue.jobs.addLast(job);
+            pending++;
+            BeaconMetrics.setGauge("schedule.pending", pending);
+            dispatch();
+        }
         try {
-            WORKER.execute(() -> {
-                applyRateLimit();
-                try {
-                    completion.complete(task.call());
-                } catch (Throwable throwable) {
-                    completion.completeExceptionally(throwable);
-                }
-            });
-        } catch (RejectedExecutionException ex) {
-            BeaconProviderMod.LOGGER.warn("Schedule queue full ({}). Pending={}", label, WORK_QUEUE.size());
-            throw new QueueRejectedException(label, ex);
+            return completion.get(deadline.remainingMillis(REQUEST_TIMEOUT_MS), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException ex) {
+            // a job that has not started yet is dropped by the dispatcher; a running one sees the cancelled deadline
+            deadline.cancel();
+            if (completion.cancel(false)) {
+                BeaconMetrics.increment(job.started ? RequestDeadline.ABANDONED : RequestDeadline.EXPIRED);
+            }
+            throw ex;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof TimeoutException) {
+                // dropped by the dispatcher, already counted
+                throw (TimeoutException) cause;
+            }
+            throw ex;
+        } catch (CancellationException ex) {
+            // the task stopped at a deadline check; CompletableFuture rethrows it unwrapped
+            if (!deadline.isCancelled()) {
+                throw ex;
+            }
+            BeaconMetrics.increment(RequestDeadline.ABANDONED);
+            throw new TimeoutException(label + " deadline exceeded while running");
         }
-        return completion.get(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
     }
 
-    private static void applyRateLimit() {
-        synchronized (RATE_LOCK) {
-            long now = System.currentTimeMillis();
-            long elapsed = now - lastExecutionTimeMs;
-            if (elapsed < RATE_LIMIT_INTERVAL_MS) {
-                try {
-                    Thread.sleep(RATE_LIMIT_INTERVAL_MS - elapsed);
-                } catch (InterruptedException ignored) {
-                    Thread.currentThread().interrupt();
+    /**
+     * Starts as many jobs as free workers, tokens and the round robin allow. Caller holds {@link #LOCK}.
+     */
+    private static void dispatch() {
+        refill();
+        while (running < WORKERS && !ROUND.isEmpty()) {
+            OriginQueue queue = ROUND.peekFirst();
+            Job job = queue.jobs.peekFirst();
+            if (job.completion.isDone() || job.deadline.isCancelled()) {
+                if (job.completion.completeExceptionally(new TimeoutException("deadline exceeded while queued"))) {
+                    BeaconMetrics.increment(RequestDeadline.EXPIRED);
                 }
+                queue.jobs.pollFirst();
+                pending--;
+                retireIfEmpty(queue);
+                continue;
+            }
+            if (queue.deficit < job.cost) {
+                queue.deficit += QUANTUM;
+                ROUND.addLast(ROUND.pollFirst());
+                continue;
+            }
+            if (tokens < job.cost) {
+                armTimer(job.cost);
+                break;
+            }
+            queue.jobs.pollFirst();
+            queue.deficit -= job.cost;
+            tokens -= job.cost;
+            pending--;
+            running++;
+            retireIfEmpty(queue);
+            BeaconMetrics.increment("schedule.dispatched");
+            try {
+                WORKER.execute(() -> {
+                    try {
+                        job.started = true;
+                        if (!job.completion.isDone()) {
+                            job.body.run();
+                        }
+                    } finally {
+                        synchronized (LOCK) {
+                            running--;
+                            dispatch();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                running--;
+                job.completion.completeExceptionally(ex);
             }
-            lastExecutionTimeMs = System.currentTimeMillis();
         }
+        BeaconMetrics.setGauge("schedule.pending", pending);
+        BeaconMetrics.setGauge("schedule.running", running);
     }
 
-    static final class QueueRejectedException extends Exception {
-        QueueRejectedException(String label, RejectedExecutionException cause) {
-            super(label + " schedule queue is full", cause);
+    private static void retireIfEmpty(OriginQueue queue) {
+        if (queue.jobs.isEmpty()) {
+            ROUND.remove(queue);
+            ORIGINS.remove(queue.originId);
+        }
+    }
+
+    private static void refill() {
+        long now = System.nanoTime();
+        double earned = (double) (now - refilledAt) / TimeUnit.MILLISECONDS.toNanos(Math.max(1L, RATE_LIMIT_INTERVAL_MS));
+        tokens = Math.min(BUCKET_CAPACITY, tokens + earned);
+        refilledAt = now;
+    }
+
+    private static void armTimer(int needed) {
+        if (timerArmed) {
+            return;
         }
+        timerArmed = true;
+        BeaconMetrics.increment("schedule.throttled");
+        long delay = (long) Math.ceil((needed - tokens) * RATE_LIMIT_INTERVAL_MS);
+        TIMER.schedule(() -> {
+            synchronized (LOCK) {
+                timerArmed = false;
+                dispatch();
+            }
+        }, Math.max(1L, delay), TimeUnit.MILLISECONDS);
     }
 
-    private static final class NamedThreadFactory implements ThreadFactory {
-        private final String baseName;
-        private final AtomicInteger counter = new AtomicInteger(1);
+    private static final class OriginQueue {
+        private final UUID originId;
+        private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+        private int deficit;
 
-        NamedThreadFactory(String baseName) {
-            this.baseName = baseName;
+        private OriginQueue(UUID originId) {
+            this.originId = originId;
         }
+    }
 
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread thread = new Thread(r, baseName + '-' + counter.getAndIncrement());
-            thread.setDaemon(true);
-            return thread;
+    private static final class Job {
+        private final int cost;
+        private final RequestDeadline deadline;
+        private final Runnable body;
+        private final CompletableFuture<?> completion;
+        private volatile boolean started;
+
+        private Job(int cost, RequestDeadline deadline, Runnable body, CompletableFuture<?> completion) {
+            this.cost = cost;
+            this.deadline = deadline;
+            this.body = body;
+            this.completion = completion;
+        }
+    }
+
+    static final class QueueRejectedException extends Exception {
+        QueueRejectedException(String label) {
+            super(label + " schedule queue is full");
         }
     }
 }
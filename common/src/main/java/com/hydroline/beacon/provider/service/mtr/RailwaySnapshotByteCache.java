@@ -0,0 +1,231 @@
+package com.hydroline.beacon.provider.service.mtr;
+
+import com.google.gson.JsonObject;
+import com.hydroline.beacon.provider.BeaconProviderMod;
+import com.hydroline.beacon.provider.mtr.PackedRailwayData;
+import com.hydroline.beacon.provider.service.BeaconMetrics;
+import com.hydroline.beacon.provider.util.PayloadChunker;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps each dimension's packed RailwayData and its Base64 chunk encoding per railway version, so concurrent snapshot
+ * requests share one encoding. The railway version only moves when the packed content changed, so an entry stays
+ * valid until a newer version of its dimension replaces it; concurrent misses for one key wait for a single build.
+ * Heap usage is bounded by LRU eviction. A buffer above the spill threshold whose entry is requested again, and so
+ * outlives a single burst of requests, is moved to a memory-mapped temp file in place, once per packed buffer.
+ */
+final class RailwaySnapshotByteCache {
+    static final String HITS = "cache.railwayBytes.hits";
+    static final String MISSES = "cache.railwayBytes.misses";
+    static final String EVICTIONS = "cache.railwayBytes.evictions";
+    static final String SPILLS = "cache.railwayBytes.spills";
+
+    private final long maxHeapBytes;
+    private final long spillThresholdBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Entry>> inFlight = new HashMap<>();
+    private long heapBytes;
+
+    RailwaySnapshotByteCache(long maxHeapBytes, long spillThresholdBytes) {
+        this.maxHeapBytes = maxHeapBytes;
+        this.spillThresholdBytes = spillThresholdBytes;
+    }
+
+    static RailwaySnapshotByteCache fromSystemProperties() {
+        return new RailwaySnapshotByteCache(
+            Long.getLong("beacon.snapshotBytesCacheMb", 64L) * 1024L * 1024L,
+            Long.getLong("beacon.snapshotSpillThresholdMb", 0L) * 1024L * 1024L);
+    }
+
+    /**
+     * @return the cached entry for {@code packed} at {@code dataVersion}, created on a miss. Callers missing while
+     *     another caller builds the same key wait for that build instead of starting their own.
+     */
+    Entry get(PackedRailwayData packed, long dataVersion) {
+        String key = packed.getDimensionId() + '|' + dataVersion;
+        CompletableFuture<Entry> pending;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                BeaconMetrics.increment(HITS);
+                pending = CompletableFuture.completedFuture(entry);
+            } else {
+                pending = inFlight.get(key);
+                if (pending == null) {
+                    inFlight.put(key, new CompletableFuture<Entry>());
+                }
+            }
+        }
+        if (pending != null) {
+            Entry entry = pending.join();
+            entry.spillIfReused();
+            return entry;
+        }
+        BeaconMetrics.increment(MISSES);
+        Entry entry = null;
+        try {
+            entry = new Entry(packed);
+            return entry;
+        } finally {
+            CompletableFuture<Entry> built;
+            synchronized (this) {
+                built = inFlight.remove(key);
+                if (entry != null && maxHeapBytes > 0L) {
+                    removeStaleVersions(packed.getDimensionId(), key);
+                    entries.put(key, entry);
+                    heapBytes += entry.weight;
+                    trim();
+                }
+            }
+            if (entry != null) {
+                built.complete(entry);
+            } else {
+                built.completeExceptionally(new IllegalStateException("railway snapshot cache entry failed"));
+            }
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        heapBytes = 0L;
+    }
+
+    private synchronized void charge(Entry entry, long bytes) {
+        if (entries.containsValue(entry)) {
+            entry.weight += bytes;
+            heapBytes += bytes;
+            trim();
+        }
+    }
+
+    private void removeStaleVersions(String dimensionId, String key) {
+        String prefix = dimensionId + '|';
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> candidate = iterator.next();
+            if (candidate.getKey().startsWith(prefix) && !candidate.getKey().equals(key)) {
+                heapBytes -= candidate.getValue().weight;
+                iterator.remove();
+                BeaconMetrics.increment(EVICTIONS);
+            }
+        }
+    }
+
+    private void trim() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (heapBytes > maxHeapBytes && iterator.hasNext()) {
+            heapBytes -= iterator.next().weight;
+            iterator.remove();
+            BeaconMetrics.increment(EVICTIONS);
+        }
+    }
+
+    /**
+     * Moves {@code packed} to a memory-mapped temp file unless another entry already did. The temp file is deleted
+     * right after mapping where the platform allows; the mapping is released once the packed buffer itself is
+     * collected, i.e. after the model and the cache both moved on to a newer railway version.
+     *
+     * @return whether this call moved the buffer.
+     */
+    private static boolean spill(PackedRailwayData packed) {
+        synchronized (packed) {
+            if (packed.isMapped()) {
+                return false;
+            }
+            Path file = null;
+            try {
+                file = Files.createTempFile("beacon-railway-", ".msgpack");
+                MappedByteBuffer region;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    ByteBuffer source = packed.buffer();
+                    while (source.hasRemaining()) {
+                        channel.write(source);
+                    }
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, 0L, packed.length());
+                }
+                packed.moveToMapped(region);
+                BeaconMetrics.increment(SPILLS);
+                return true;
+            } catch (IOException ex) {
+                BeaconProviderMod.LOGGER.warn("Failed to spill railway snapshot for {} to disk",
+                    packed.getDimensionId(), ex);
+                return false;
+            } finally {
+                if (file != null) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException ex) {
+                        file.toFile().deleteOnExit();
+                    }
+                }
+            }
+        }
+    }
+
+    final class Entry {
+        private final PackedRailwayData packed;
+        private final AtomicBoolean spillChecked = new AtomicBoolean();
+        private long weight;
+        private volatile JsonObject base64Chunks;
+
+        private Entry(PackedRailwayData packed) {
+            this.packed = packed;
+            this.weight = packed.estimatedHeapBytes();
+        }
+
+        PackedRailwayData packed() {
+            return packed;
+        }
+
+        /**
+         * @return the {@code payloadChunks} object for the full buffer, encoded on first use and shared afterwards.
+         *     Encoding reads the buffer in place, so a spilled buffer is not copied back to the heap.
+         */
+        JsonObject base64Chunks() {
+            JsonObject chunks = base64Chunks;
+            if (chunks == null) {
+                synchronized (this) {
+                    chunks = base64Chunks;
+                    if (chunks == null) {
+                        ByteBuffer encodedBytes = Base64.getEncoder().encode(packed.buffer());
+                        String encoded = new String(encodedBytes.array(), encodedBytes.arrayOffset(),
+                            encodedBytes.remaining(), StandardCharsets.ISO_8859_1);
+                        chunks = PayloadChunker.chunkEncodedPayload("base64", encoded, packed.length());
+                        base64Chunks = chunks;
+                        // chunk strings hold the Base64 text as UTF-16
+                        charge(this, encoded.length() * 2L);
+                    }
+                }
+            }
+            return chunks;
+        }
+
+        /**
+         * Called on every cache hit; the first hit on a large entry spills its buffer, the caller that triggered it
+         * pays for the write while concurrent callers keep reading the heap copy.
+         */
+        private void spillIfReused() {
+            if (spillThresholdBytes <= 0L || packed.length() < spillThresholdBytes
+                || !spillChecked.compareAndSet(false, true)) {
+                return;
+            }
+            if (spill(packed)) {
+                charge(this, -packed.length());
+            }
+        }
+    }
+}
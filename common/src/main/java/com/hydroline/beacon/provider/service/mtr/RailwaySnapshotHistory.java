@@ -0,0 +1,59 @@
+package com.hydroline.beacon.provider.service.mtr;
+
+import com.hydroline.beacon.provider.mtr.PackedRailwayData;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded record of recently served railway snapshot versions: for each etag, the per-object content hashes of every
+ * dimension it covered. Deltas are computed against these; older tokens fall out and force a full resync.
+ */
+final class RailwaySnapshotHistory {
+    private final int capacity;
+    private final LinkedHashMap<String, Map<String, Map<String, Map<String, Long>>>> versions;
+    private Map<String, Map<String, Map<String, Long>>> latest = Collections.emptyMap();
+
+    RailwaySnapshotHistory(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.versions = new LinkedHashMap<String, Map<String, Map<String, Map<String, Long>>>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Map<String, Map<String, Long>>>> eldest) {
+                return size() > RailwaySnapshotHistory.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @return dimension id to dataset name to element hashes for {@code etag}, or {@code null} if it is unknown.
+     */
+    synchronized Map<String, Map<String, Map<String, Long>>> get(String etag) {
+        return versions.get(etag);
+    }
+
+    /**
+     * Records the version; dataset indexes equal to the previously recorded ones are shared rather than copied.
+     */
+    synchronized void record(String etag, List<PackedRailwayData> packed) {
+        if (versions.containsKey(etag)) {
+            return;
+        }
+        Map<String, Map<String, Map<String, Long>>> dimensions = new HashMap<>();
+        for (PackedRailwayData data : packed) {
+            Map<String, Map<String, Long>> previous = latest.get(data.getDimensionId());
+            Map<String, Map<String, Long>> datasets = new HashMap<>();
+            for (PackedRailwayData.Dataset dataset : data.getDatasets()) {
+                Map<String, Long> hashes = dataset.hashesById();
+                Map<String, Long> shared = previous == null ? null : previous.get(dataset.getName());
+                datasets.put(dataset.getName(), hashes.equals(shared) ? shared : Collections.unmodifiableMap(hashes));
+            }
+            dimensions.put(data.getDimensionId(), datasets);
+        }
+        Map<String, Map<String, Map<String, Long>>> merged = new HashMap<>(latest);
+        merged.putAll(dimensions);
+        latest = merged;
+        versions.put(etag, Collections.unmodifiableMap(dimensions));
+    }
+}
@@ -23,21 +23,44 @@ public final class BeaconRequestDispatcher {
     }
 
     public BeaconResponse dispatch(byte[] payload, TransportContext context) {
+        BeaconMessage message;
         try {
-            BeaconMessage message = MessageSerializer.deserialize(payload);
-            return service.handle(message, context);
+            message = MessageSerializer.deserialize(payload);
         } catch (JsonParseException ex) {
-            LOGGER.warn("Invalid JSON from {} via {}: {}", context.getOriginId(), context.getKind(), ex.getMessage());
-            return BeaconResponse.builder("invalid")
-                .result(ResultCode.INVALID_PAYLOAD)
-                .message("JSON parse error: " + ex.getMessage())
-                .build();
+            return invalidPayload(ex, context);
         } catch (Exception ex) {
-            LOGGER.error("Failed to handle message from {} via {}", context.getOriginId(), context.getKind(), ex);
-            return BeaconResponse.builder("internal")
-                .result(ResultCode.ERROR)
-                .message("Internal error")
-                .build();
+            return internalError(ex, context);
         }
+        return dispatch(message, context);
+    }
+
+    /**
+     * Entry point for transports that already decoded the request envelope themselves.
+     */
+    public BeaconResponse dispatch(BeaconMessage message, TransportContext context) {
+        try {
+            return service.handle(message, context);
+        } catch (Exception ex) {
+            return internalError(ex, context);
+        }
+    }
+
+    /**
+     * Builds the response for a request body that could not be parsed into a {@link BeaconMessage}.
+     */
+    public BeaconResponse invalidPayload(JsonParseException ex, TransportContext context) {
+        LOGGER.warn("Invalid JSON from {} via {}: {}", context.getOriginId(), context.getKind(), ex.getMessage());
+        return BeaconResponse.builder("invalid")
+            .result(ResultCode.INVALID_PAYLOAD)
+            .message("JSON parse error: " + ex.getMessage())
+            .build();
+    }
+
+    private BeaconResponse internalError(Exception ex, TransportContext context) {
+        LOGGER.error("Failed to handle message from {} via {}", context.getOriginId(), context.getKind(), ex);
+        return BeaconResponse.builder("internal")
+            .result(ResultCode.ERROR)
+            .message("Internal error")
+            .build();
     }
 }
@@ -1,26 +1,91 @@
 package com.hydroline.beacon.provider.transport;
 
+import com.google.gson.JsonParseException;
+import com.hydroline.beacon.provider.BeaconProviderMod;
+import com.hydroline.beacon.provider.protocol.BeaconMessage;
 import com.hydroline.beacon.provider.protocol.BeaconResponse;
+import com.hydroline.beacon.provider.protocol.ChannelFragments;
+import com.hydroline.beacon.provider.protocol.MessageSerializer;
+import com.hydroline.beacon.provider.protocol.ResultCode;
+import com.hydroline.beacon.provider.service.BeaconMetrics;
 import com.hydroline.beacon.provider.service.BeaconProviderService;
+import com.hydroline.beacon.provider.util.NamedThreadFactory;
 import java.time.Instant;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Glue code used by loader-specific entrypoints to wire channel events into the shared service.
+ * Glue code used by loader-specific entrypoints to wire channel events into the shared service. Requests are
+ * dispatched on {@code beacon.channelWorkers} worker threads (queue bounded by {@code beacon.channelQueueCapacity}),
+ * so loaders may call {@link #handleIncoming} straight from the network thread; a full queue answers {@code BUSY}.
+ * A request whose envelope carries {@code "compression": "deflate"} gets its response compressed by the messenger.
  */
 public final class ChannelMessageRouter {
+    private static final int WORKERS = Math.max(1, Integer.getInteger("beacon.channelWorkers", 2));
+    private static final int QUEUE_CAPACITY = Math.max(1, Integer.getInteger("beacon.channelQueueCapacity", 256));
+    private static final long IDLE_KEEP_ALIVE_SECONDS = 60L;
+
     private final BeaconRequestDispatcher dispatcher;
     private final ChannelMessenger messenger;
+    private final ThreadPoolExecutor executor;
 
     public ChannelMessageRouter(BeaconProviderService service, ChannelMessenger messenger) {
         this.dispatcher = new BeaconRequestDispatcher(Objects.requireNonNull(service, "service"));
         this.messenger = Objects.requireNonNull(messenger, "messenger");
+        this.executor = new ThreadPoolExecutor(
+            WORKERS,
+            WORKERS,
+            IDLE_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+            new NamedThreadFactory("beacon-channel-dispatch")
+        );
+        this.executor.allowCoreThreadTimeOut(true);
     }
 
+    /**
+     * Queues {@code payload} for dispatch; safe to call from any thread. The response is handed to the
+     * {@link ChannelMessenger} from a worker thread.
+     */
     public void handleIncoming(UUID playerUuid, byte[] payload) {
         TransportContext context = new TransportContext(playerUuid, TransportKind.PLUGIN_MESSAGE, Instant.now());
-        BeaconResponse response = dispatcher.dispatch(payload, context);
-        messenger.reply(playerUuid, response);
+        try {
+            executor.execute(() -> dispatch(playerUuid, payload, context));
+        } catch (RejectedExecutionException ex) {
+            BeaconMetrics.increment("channel.rejected");
+            BeaconProviderMod.LOGGER.warn("Channel dispatch queue full, rejecting request from {}", playerUuid);
+            messenger.reply(playerUuid, BeaconResponse.builder(extractRequestId(payload))
+                .result(ResultCode.BUSY)
+                .message("Channel dispatch queue is full")
+                .build());
+        }
+    }
+
+    private void dispatch(UUID playerUuid, byte[] payload, TransportContext context) {
+        BeaconResponse response;
+        boolean deflate = false;
+        try {
+            BeaconMessage message = MessageSerializer.deserialize(payload);
+            deflate = ChannelFragments.COMPRESSION_DEFLATE.equalsIgnoreCase(message.getCompression());
+            response = dispatcher.dispatch(message, context);
+        } catch (JsonParseException ex) {
+            response = dispatcher.invalidPayload(ex, context);
+        } catch (RuntimeException ex) {
+            response = dispatcher.invalidPayload(new JsonParseException(ex.getMessage(), ex), context);
+        }
+        messenger.reply(playerUuid, response, deflate);
+    }
+
+    private static String extractRequestId(byte[] payload) {
+        try {
+            BeaconMessage message = MessageSerializer.deserialize(payload);
+            return message.getRequestId();
+        } catch (Exception ex) {
+            return "busy";
+        }
     }
 }
@@ -4,8 +4,17 @@ import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import java.util.UUID;
 
 /**
- * Abstraction for sending responses back through the plugin channel.
+ * Abstraction for sending responses back through the plugin channel. Called from dispatch worker threads (and from
+ * the network thread for {@code BUSY} rejections); implementations serialize on the calling thread and hand only the
+ * packet send to the server thread.
  */
 public interface ChannelMessenger {
     void reply(UUID playerUuid, BeaconResponse response);
+
+    /**
+     * @param deflate whether the request asked for compressed responses; messengers that cannot compress ignore it.
+     */
+    default void reply(UUID playerUuid, BeaconResponse response, boolean deflate) {
+        reply(playerUuid, response);
+    }
 }
@@ -0,0 +1,223 @@
+package com.hydroline.beacon.provider.transport;
+
+import com.hydroline.beacon.provider.BeaconProviderMod;
+import com.hydroline.beacon.provider.protocol.BeaconResponse;
+import com.hydroline.beacon.provider.protocol.ChannelFragments;
+import com.hydroline.beacon.provider.protocol.MessageSerializer;
+import com.hydroline.beacon.provider.protocol.ResultCode;
+import com.hydroline.beacon.provider.service.BeaconMetrics;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * {@link ChannelMessenger} that serializes and frames responses on the calling thread and queues the packets per
+ * player. {@link #onServerTick()} drains the queues round robin, sending at most {@code beacon.channelBytesPerTick}
+ * bytes per tick, so a large response goes out over several ticks instead of one burst. Packets are bounded by
+ * {@code beacon.channelMaxPacketBytes} (see {@link ChannelFragments}); a response that would push a player's queue past
+ * {@code beacon.channelOutboxBytes} is replaced by {@code BUSY}. When the request asked for compression, bodies of at
+ * least {@code beacon.channelDeflateThresholdBytes} are deflated at {@code beacon.channelDeflateLevel} and sent with
+ * {@link ChannelFragments#FLAG_DEFLATE}, unless that would not make them smaller.
+ */
+public abstract class FragmentingChannelMessenger implements ChannelMessenger {
+    private static final int MAX_PACKET_BYTES = Math.max(1024,
+        Integer.getInteger("beacon.channelMaxPacketBytes", ChannelFragments.DEFAULT_MAX_PACKET_BYTES));
+    private static final long BYTES_PER_TICK = Math.max(MAX_PACKET_BYTES,
+        Long.getLong("beacon.channelBytesPerTick", 256L * 1024L));
+    private static final long OUTBOX_LIMIT_BYTES = Long.getLong("beacon.channelOutboxBytes", 16L * 1024L * 1024L);
+    private static final int DEFLATE_THRESHOLD_BYTES = Integer.getInteger("beacon.channelDeflateThresholdBytes", 1024);
+    private static final int DEFLATE_LEVEL = Integer.getInteger("beacon.channelDeflateLevel", Deflater.BEST_SPEED);
+
+    private final Map<UUID, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    @Override
+    public void reply(UUID playerUuid, BeaconResponse response) {
+        reply(playerUuid, response, false);
+    }
+
+    @Override
+    public void reply(UUID playerUuid, BeaconResponse response, boolean deflate) {
+        List<byte[]> packets;
+        try {
+            packets = frame(response, deflate);
+        } catch (IllegalArgumentException ex) {
+            BeaconProviderMod.LOGGER.warn("Dropping oversized channel response {}: {}", response.getRequestId(),
+                ex.getMessage());
+            enqueueControl(playerUuid, BeaconResponse.builder(response.getRequestId())
+                .result(ResultCode.ERROR)
+                .message("Response too large for the plugin channel")
+                .build());
+            return;
+        }
+        if (!enqueue(playerUuid, packets, OUTBOX_LIMIT_BYTES)) {
+            BeaconMetrics.increment("channel.outbox.rejected");
+            enqueueControl(playerUuid, BeaconResponse.builder(response.getRequestId())
+                .result(ResultCode.BUSY)
+                .message("Plugin channel outbox is full")
+                .build());
+            return;
+        }
+        if (packets.size() > 1) {
+            BeaconMetrics.increment("channel.responses.fragmented");
+        }
+    }
+
+    /**
+     * Sends queued packets; must be called on the server thread once per tick.
+     */
+    public void onServerTick() {
+        if (outboxes.isEmpty()) {
+            return;
+        }
+        long budget = BYTES_PER_TICK;
+        boolean progressed = true;
+        while (budget > 0L && progressed) {
+            progressed = false;
+            Iterator<Map.Entry<UUID, Outbox>> iterator = outboxes.entrySet().iterator();
+            while (iterator.hasNext() && budget > 0L) {
+                Map.Entry<UUID, Outbox> entry = iterator.next();
+                Outbox outbox = entry.getValue();
+                byte[] packet = outbox.poll();
+                if (packet == null) {
+                    if (outbox.retireIfEmpty()) {
+                        iterator.remove();
+                    }
+                    continue;
+                }
+                queuedBytes.addAndGet(-packet.length);
+                if (!sendPacket(entry.getKey(), packet)) {
+                    // player left; whatever is still queued can never be delivered
+                    queuedBytes.addAndGet(-outbox.retire());
+                    iterator.remove();
+                    continue;
+                }
+                BeaconMetrics.increment("channel.packets.sent");
+                budget -= packet.length;
+                progressed = true;
+            }
+        }
+        BeaconMetrics.setGauge("channel.outbox.bytes", queuedBytes.get());
+    }
+
+    /**
+     * Drops every queued packet, e.g. when the server stops.
+     */
+    public void discardAll() {
+        for (Outbox outbox : outboxes.values()) {
+            outbox.retire();
+        }
+        outboxes.clear();
+        queuedBytes.set(0L);
+        BeaconMetrics.setGauge("channel.outbox.bytes", 0L);
+    }
+
+    /**
+     * Sends one packet to {@code playerUuid}; called on the server thread.
+     *
+     * @return {@code false} if the player is no longer online.
+     */
+    protected abstract boolean sendPacket(UUID playerUuid, byte[] packet);
+
+    private static List<byte[]> frame(BeaconResponse response, boolean deflate) {
+        byte[] body = MessageSerializer.serialize(response);
+        if (deflate && body.length >= DEFLATE_THRESHOLD_BYTES) {
+            byte[] compressed = ChannelFragments.deflate(body, DEFLATE_LEVEL);
+            if (compressed.length < body.length) {
+                BeaconMetrics.add("channel.deflate.inBytes", body.length);
+                BeaconMetrics.add("channel.deflate.outBytes", compressed.length);
+                return ChannelFragments.split(response.getRequestId(), compressed, ChannelFragments.FLAG_DEFLATE,
+                    MAX_PACKET_BYTES);
+            }
+        }
+        return ChannelFragments.split(response.getRequestId(), body, 0, MAX_PACKET_BYTES);
+    }
+
+    /**
+     * Queues a small BUSY/ERROR reply regardless of {@code beacon.channelOutboxBytes}, so every request still gets an
+     * answer when its real response was refused.
+     */
+    private void enqueueControl(UUID playerUuid, BeaconResponse response) {
+        enqueue(playerUuid, frame(response, false), Long.MAX_VALUE);
+    }
+
+    private boolean enqueue(UUID playerUuid, List<byte[]> packets, long limit) {
+        long size = 0L;
+        for (byte[] packet : packets) {
+            size += packet.length;
+        }
+        while (true) {
+            Outbox outbox = outboxes.computeIfAbsent(playerUuid, id -> new Outbox());
+            int added = outbox.addAll(packets, size, limit);
+            if (added == Outbox.RETIRED) {
+                // drained and removed by the tick in between; retry with a fresh outbox
+                continue;
+            }
+            if (added == Outbox.FULL) {
+                return false;
+            }
+            BeaconMetrics.setGauge("channel.outbox.bytes", queuedBytes.addAndGet(size));
+            return true;
+        }
+    }
+
+    /**
+     * Packets of one player; a response's packets are appended together so they stay contiguous. Once retired an
+     * outbox accepts nothing, so a concurrent reply moves on to a new one instead of being lost.
+     */
+    private static final class Outbox {
+        static final int ADDED = 0;
+        static final int FULL = 1;
+        static final int RETIRED = 2;
+
+        private final ArrayDeque<byte[]> packets = new ArrayDeque<>();
+        private long bytes;
+        private boolean retired;
+
+        synchronized int addAll(List<byte[]> additions, long size, long limit) {
+            if (retired) {
+                return RETIRED;
+            }
+            // a single response always fits into an empty outbox, so small errors still get through
+            if (!packets.isEmpty() && bytes + size > limit) {
+                return FULL;
+            }
+            packets.addAll(additions);
+            bytes += size;
+            return ADDED;
+        }
+
+        synchronized byte[] poll() {
+            byte[] packet = packets.pollFirst();
+            if (packet != null) {
+                bytes -= packet.length;
+            }
+            return packet;
+        }
+
+        synchronized boolean retireIfEmpty() {
+            if (packets.isEmpty()) {
+                retired = true;
+            }
+            return retired;
+        }
+
+        /**
+         * Retires the outbox and drops its packets.
+         *
+         * @return the number of bytes dropped.
+         */
+        synchronized long retire() {
+            long dropped = bytes;
+            packets.clear();
+            bytes = 0L;
+            retired = true;
+            return dropped;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.hydroline.beacon.provider.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Renders JSON with object keys sorted so logically equal payloads produce the same string (used as a cache key).
+ */
+public final class CanonicalJson {
+    private CanonicalJson() {
+    }
+
+    public static String toCanonicalString(JsonElement element) {
+        StringBuilder builder = new StringBuilder();
+        append(builder, element);
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            builder.append("null");
+        } else if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            List<String> keys = new ArrayList<>(object.keySet());
+            Collections.sort(keys);
+            builder.append('{');
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(new JsonPrimitive(keys.get(i))).append(':');
+                append(builder, object.get(keys.get(i)));
+            }
+            builder.append('}');
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            builder.append('[');
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                append(builder, array.get(i));
+            }
+            builder.append(']');
+        } else {
+            builder.append(element);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.hydroline.beacon.provider.util;
+
+import com.google.gson.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Incremental content hash used as an ETag-style version token for large responses.
+ */
+public final class ContentVersion {
+    public static final String IF_NONE_MATCH = "ifNoneMatch";
+
+    private static final int TOKEN_BYTES = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest;
+
+    private ContentVersion() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    public static ContentVersion create() {
+        return new ContentVersion();
+    }
+
+    public ContentVersion update(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        update(bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    public ContentVersion update(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (value >>> shift));
+        }
+        return this;
+    }
+
+    public ContentVersion update(byte[] data) {
+        update(data.length);
+        digest.update(data);
+        return this;
+    }
+
+    /**
+     * @return the token as lowercase hex; the instance must not be reused afterwards.
+     */
+    public String finish() {
+        byte[] hash = digest.digest();
+        char[] chars = new char[TOKEN_BYTES * 2];
+        for (int i = 0; i < TOKEN_BYTES; i++) {
+            chars[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return {@code true} if the request payload carries an {@code ifNoneMatch} equal to {@code version}.
+     */
+    public static boolean matches(JsonObject payload, String version) {
+        if (payload == null || version == null || !payload.has(IF_NONE_MATCH) || payload.get(IF_NONE_MATCH).isJsonNull()) {
+            return false;
+        }
+        return version.equals(payload.get(IF_NONE_MATCH).getAsString());
+    }
+}
@@ -0,0 +1,23 @@
+package com.hydroline.beacon.provider.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads named {@code <baseName>-<n>} so provider workers never keep the server alive.
+ */
+public final class NamedThreadFactory implements ThreadFactory {
+    private final String baseName;
+    private final AtomicInteger counter = new AtomicInteger(1);
+
+    public NamedThreadFactory(String baseName) {
+        this.baseName = baseName;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, baseName + '-' + counter.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
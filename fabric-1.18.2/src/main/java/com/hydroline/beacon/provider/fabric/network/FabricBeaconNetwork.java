@@ -2,17 +2,16 @@ package com.hydroline.beacon.provider.fabric.network;
 
 import com.hydroline.beacon.provider.gateway.BeaconGatewayManager;
 import com.hydroline.beacon.provider.protocol.ChannelConstants;
-import com.hydroline.beacon.provider.protocol.MessageSerializer;
-import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import com.hydroline.beacon.provider.service.BeaconProviderService;
 import com.hydroline.beacon.provider.service.BeaconServiceFactory;
 import com.hydroline.beacon.provider.transport.ChannelMessageRouter;
-import com.hydroline.beacon.provider.transport.ChannelMessenger;
+import com.hydroline.beacon.provider.transport.FragmentingChannelMessenger;
 import com.hydroline.beacon.provider.mtr.MtrQueryGateway;
 import com.hydroline.beacon.provider.mtr.MtrQueryRegistry;
 import com.hydroline.beacon.provider.fabric.mtr.FabricMtrQueryGateway;
 import java.util.UUID;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.fabricmc.loader.api.FabricLoader;
@@ -28,6 +27,7 @@ public final class FabricBeaconNetwork {
     private final ChannelMessageRouter router;
     private final FabricChannelMessenger messenger;
     private final BeaconGatewayManager gatewayManager;
+    private FabricMtrQueryGateway mtrGateway;
 
     public FabricBeaconNetwork() {
         this.service = BeaconServiceFactory.createDefault();
@@ -41,25 +41,35 @@ public final class FabricBeaconNetwork {
     private void registerLifecycleHooks() {
         ServerLifecycleEvents.SERVER_STARTED.register(server -> {
             messenger.setServer(server);
-            MtrQueryRegistry.register(new FabricMtrQueryGateway(() -> server));
+            mtrGateway = new FabricMtrQueryGateway(() -> server);
+            MtrQueryRegistry.register(mtrGateway);
             gatewayManager.start(FabricLoader.getInstance().getConfigDir());
         });
         ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
             messenger.setServer(null);
+            messenger.discardAll();
+            mtrGateway = null;
             MtrQueryRegistry.register(MtrQueryGateway.UNAVAILABLE);
             gatewayManager.stop();
         });
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            FabricMtrQueryGateway gateway = mtrGateway;
+            if (gateway != null) {
+                gateway.onServerTick();
+            }
+            messenger.onServerTick();
+        });
     }
 
     private void registerChannelReceiver() {
         ServerPlayNetworking.registerGlobalReceiver(CHANNEL_ID, (server, player, handler, buf, responseSender) -> {
             byte[] bytes = new byte[buf.readableBytes()];
             buf.readBytes(bytes);
-            server.execute(() -> router.handleIncoming(player.getUUID(), bytes));
+            router.handleIncoming(player.getUUID(), bytes);
         });
     }
 
-    private static final class FabricChannelMessenger implements ChannelMessenger {
+    private static final class FabricChannelMessenger extends FragmentingChannelMessenger {
         private volatile MinecraftServer server;
 
         void setServer(MinecraftServer server) {
@@ -67,19 +77,16 @@ public final class FabricBeaconNetwork {
         }
 
         @Override
-        public void reply(UUID playerUuid, BeaconResponse response) {
+        protected boolean sendPacket(UUID playerUuid, byte[] packet) {
             MinecraftServer current = server;
-            if (current == null) {
-                return;
-            }
-            ServerPlayer player = current.getPlayerList().getPlayer(playerUuid);
+            ServerPlayer player = current == null ? null : current.getPlayerList().getPlayer(playerUuid);
             if (player == null) {
-                return;
+                return false;
             }
-            byte[] bytes = MessageSerializer.serialize(response);
             FriendlyByteBuf reply = PacketByteBufs.create();
-            reply.writeBytes(bytes);
+            reply.writeBytes(packet);
             ServerPlayNetworking.send(player, CHANNEL_ID, reply);
+            return true;
         }
     }
 }
@@ -4,13 +4,11 @@ import com.hydroline.beacon.provider.forge.mtr.ForgeMtrQueryGateway;
 import com.hydroline.beacon.provider.gateway.BeaconGatewayManager;
 import com.hydroline.beacon.provider.mtr.MtrQueryGateway;
 import com.hydroline.beacon.provider.mtr.MtrQueryRegistry;
-import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import com.hydroline.beacon.provider.protocol.ChannelConstants;
-import com.hydroline.beacon.provider.protocol.MessageSerializer;
 import com.hydroline.beacon.provider.service.BeaconProviderService;
 import com.hydroline.beacon.provider.service.BeaconServiceFactory;
 import com.hydroline.beacon.provider.transport.ChannelMessageRouter;
-import com.hydroline.beacon.provider.transport.ChannelMessenger;
+import com.hydroline.beacon.provider.transport.FragmentingChannelMessenger;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
@@ -26,6 +24,7 @@ import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.event.server.FMLServerStartedEvent;
@@ -44,6 +43,7 @@ public final class ForgeBeaconNetwork {
     private final ChannelMessageRouter router;
     private final ForgeChannelMessenger messenger;
     private final BeaconGatewayManager gatewayManager;
+    private ForgeMtrQueryGateway mtrGateway;
 
     public ForgeBeaconNetwork() {
         this.service = BeaconServiceFactory.createDefault();
@@ -56,17 +56,32 @@ public final class ForgeBeaconNetwork {
     @SubscribeEvent
     public void onServerStarted(FMLServerStartedEvent event) {
         messenger.setServer(event.getServer());
-        MtrQueryRegistry.register(new ForgeMtrQueryGateway(() -> event.getServer()));
+        mtrGateway = new ForgeMtrQueryGateway(() -> event.getServer());
+        MtrQueryRegistry.register(mtrGateway);
         gatewayManager.start(FMLPaths.CONFIGDIR.get());
     }
 
     @SubscribeEvent
     public void onServerStopping(FMLServerStoppingEvent event) {
         messenger.setServer(null);
+        messenger.discardAll();
+        mtrGateway = null;
         MtrQueryRegistry.register(MtrQueryGateway.UNAVAILABLE);
         gatewayManager.stop();
     }
 
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        ForgeMtrQueryGateway gateway = mtrGateway;
+        if (gateway != null) {
+            gateway.onServerTick();
+        }
+        messenger.onServerTick();
+    }
+
     @SubscribeEvent
     public void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent event) {
         if (event.getPlayer() instanceof ServerPlayer) {
@@ -141,7 +156,7 @@ public final class ForgeBeaconNetwork {
             byte[] bytes = new byte[payload.readableBytes()];
             payload.readBytes(bytes);
             if (messenger.getServer() != null) {
-                messenger.getServer().execute(() -> router.handleIncoming(playerUuid, bytes));
+                router.handleIncoming(playerUuid, bytes);
             }
         }
 
@@ -151,7 +166,7 @@ public final class ForgeBeaconNetwork {
         }
     }
 
-    private static final class ForgeChannelMessenger implements ChannelMessenger {
+    private static final class ForgeChannelMessenger extends FragmentingChannelMessenger {
         private volatile MinecraftServer server;
 
         void setServer(MinecraftServer server) {
@@ -163,19 +178,15 @@ public final class ForgeBeaconNetwork {
         }
 
         @Override
-        public void reply(UUID playerUuid, BeaconResponse response) {
+        protected boolean sendPacket(UUID playerUuid, byte[] packet) {
             MinecraftServer current = server;
-            if (current == null) {
-                return;
-            }
-            ServerPlayer player = current.getPlayerList().getPlayer(playerUuid);
+            ServerPlayer player = current == null ? null : current.getPlayerList().getPlayer(playerUuid);
             if (player == null) {
-                return;
+                return false;
             }
-            byte[] bytes = MessageSerializer.serialize(response);
-            FriendlyByteBuf reply = new FriendlyByteBuf(Unpooled.buffer(bytes.length));
-            reply.writeBytes(bytes);
+            FriendlyByteBuf reply = new FriendlyByteBuf(Unpooled.wrappedBuffer(packet));
             player.connection.send(new ClientboundCustomPayloadPacket(CHANNEL_ID, reply));
+            return true;
         }
     }
 }
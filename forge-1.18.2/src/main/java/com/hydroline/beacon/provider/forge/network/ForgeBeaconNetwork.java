@@ -1,13 +1,11 @@
 package com.hydroline.beacon.provider.forge.network;
 
 import com.hydroline.beacon.provider.gateway.BeaconGatewayManager;
-import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import com.hydroline.beacon.provider.protocol.ChannelConstants;
-import com.hydroline.beacon.provider.protocol.MessageSerializer;
 import com.hydroline.beacon.provider.service.BeaconProviderService;
 import com.hydroline.beacon.provider.service.BeaconServiceFactory;
 import com.hydroline.beacon.provider.transport.ChannelMessageRouter;
-import com.hydroline.beacon.provider.transport.ChannelMessenger;
+import com.hydroline.beacon.provider.transport.FragmentingChannelMessenger;
 import com.hydroline.beacon.provider.mtr.MtrQueryGateway;
 import com.hydroline.beacon.provider.mtr.MtrQueryRegistry;
 import com.hydroline.beacon.provider.forge.mtr.ForgeMtrQueryGateway;
@@ -26,6 +24,7 @@ import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.event.server.ServerStartingEvent;
 import net.minecraftforge.event.server.ServerStoppedEvent;
@@ -44,6 +43,7 @@ public final class ForgeBeaconNetwork {
     private final ChannelMessageRouter router;
     private final ForgeChannelMessenger messenger;
     private final BeaconGatewayManager gatewayManager;
+    private ForgeMtrQueryGateway mtrGateway;
 
     public ForgeBeaconNetwork() {
         this.service = BeaconServiceFactory.createDefault();
@@ -57,17 +57,32 @@ public final class ForgeBeaconNetwork {
     public void onServerStarting(ServerStartingEvent event) {
         MinecraftServer server = event.getServer();
         messenger.setServer(server);
-        MtrQueryRegistry.register(new ForgeMtrQueryGateway(() -> server));
+        mtrGateway = new ForgeMtrQueryGateway(() -> server);
+        MtrQueryRegistry.register(mtrGateway);
         gatewayManager.start(FMLPaths.CONFIGDIR.get());
     }
 
     @SubscribeEvent
     public void onServerStopped(ServerStoppedEvent event) {
         messenger.setServer(null);
+        messenger.discardAll();
+        mtrGateway = null;
         MtrQueryRegistry.register(MtrQueryGateway.UNAVAILABLE);
         gatewayManager.stop();
     }
 
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        ForgeMtrQueryGateway gateway = mtrGateway;
+        if (gateway != null) {
+            gateway.onServerTick();
+        }
+        messenger.onServerTick();
+    }
+
     @SubscribeEvent
     public void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent event) {
         if (event.getEntity() instanceof ServerPlayer player) {
@@ -141,9 +156,8 @@ public final class ForgeBeaconNetwork {
             }
             byte[] bytes = new byte[payload.readableBytes()];
             payload.readBytes(bytes);
-            MinecraftServer server = messenger.getServer();
-            if (server != null) {
-                server.execute(() -> router.handleIncoming(playerUuid, bytes));
+            if (messenger.getServer() != null) {
+                router.handleIncoming(playerUuid, bytes);
             }
         }
 
@@ -153,7 +167,7 @@ public final class ForgeBeaconNetwork {
         }
     }
 
-    private static final class ForgeChannelMessenger implements ChannelMessenger {
+    private static final class ForgeChannelMessenger extends FragmentingChannelMessenger {
         private volatile MinecraftServer server;
 
         void setServer(MinecraftServer server) {
@@ -165,19 +179,15 @@ public final class ForgeBeaconNetwork {
         }
 
         @Override
-        public void reply(UUID playerUuid, BeaconResponse response) {
+        protected boolean sendPacket(UUID playerUuid, byte[] packet) {
             MinecraftServer current = server;
-            if (current == null) {
-                return;
-            }
-            ServerPlayer player = current.getPlayerList().getPlayer(playerUuid);
+            ServerPlayer player = current == null ? null : current.getPlayerList().getPlayer(playerUuid);
             if (player == null) {
-                return;
+                return false;
             }
-            byte[] bytes = MessageSerializer.serialize(response);
-            FriendlyByteBuf reply = new FriendlyByteBuf(Unpooled.buffer(bytes.length));
-            reply.writeBytes(bytes);
+            FriendlyByteBuf reply = new FriendlyByteBuf(Unpooled.wrappedBuffer(packet));
             player.connection.send(new ClientboundCustomPayloadPacket(CHANNEL_ID, reply));
+            return true;
         }
     }
 }
@@ -31,27 +31,103 @@ final class CreateGraphSnapshotBuilder {
     private CreateGraphSnapshotBuilder() {
     }
 
-    static CreateNetworkSnapshot build(TrackGraph graph, long updatedAt) {
-        if (graph == null || graph.id == null) {
-            return new CreateNetworkSnapshot(Collections.<CreateNetworkSnapshot.GraphInfo>emptyList(),
-                Collections.<CreateNetworkSnapshot.NodeInfo>emptyList(),
-                Collections.<CreateNetworkSnapshot.EdgeInfo>emptyList(),
-                Collections.<CreateNetworkSnapshot.EdgePolylinePoint>emptyList(),
-                Collections.<CreateNetworkSnapshot.StationInfo>emptyList(),
-                Collections.<CreateNetworkSnapshot.SignalBoundaryInfo>emptyList(),
-                Collections.<CreateNetworkSnapshot.EdgeSegmentInfo>emptyList());
+    /**
+     * Begins a capture that {@link Capture#step()} advances a few nodes at a time, so a large graph can be copied
+     * across several server ticks.
+     */
+    static Capture start(TrackGraph graph, long updatedAt) {
+        return new Capture(graph, updatedAt);
+    }
+
+    static final class Capture {
+        private static final int NODES_PER_STEP = 64;
+
+        private final TrackGraph graph;
+        private final String graphId;
+        private final int checksum;
+        private final long updatedAt;
+        private final List<TrackNodeLocation> locations;
+        private final List<TrackNode> resolvedNodes = new ArrayList<TrackNode>();
+        private final Set<TrackEdge> visited = Collections.newSetFromMap(new IdentityHashMap<TrackEdge, Boolean>());
+        private final List<CreateNetworkSnapshot.NodeInfo> nodes = new ArrayList<CreateNetworkSnapshot.NodeInfo>();
+        private final List<CreateNetworkSnapshot.EdgeInfo> edges = new ArrayList<CreateNetworkSnapshot.EdgeInfo>();
+        private final List<CreateNetworkSnapshot.EdgePolylinePoint> polylines = new ArrayList<CreateNetworkSnapshot.EdgePolylinePoint>();
+        private final List<CreateNetworkSnapshot.StationInfo> stations = new ArrayList<CreateNetworkSnapshot.StationInfo>();
+        private final List<CreateNetworkSnapshot.SignalBoundaryInfo> boundaries = new ArrayList<CreateNetworkSnapshot.SignalBoundaryInfo>();
+        private final List<CreateNetworkSnapshot.EdgeSegmentInfo> segments = new ArrayList<CreateNetworkSnapshot.EdgeSegmentInfo>();
+        private int locationCursor;
+        private int edgeCursor;
+
+        private Capture(TrackGraph graph, long updatedAt) {
+            this.graph = graph;
+            this.updatedAt = updatedAt;
+            boolean valid = graph != null && graph.id != null;
+            this.graphId = valid ? graph.id.toString() : null;
+            this.checksum = valid ? graph.getChecksum() : 0;
+            this.locations = valid
+                ? new ArrayList<TrackNodeLocation>(graph.getNodes())
+                : Collections.<TrackNodeLocation>emptyList();
+        }
+
+        /**
+         * Copies the next batch of nodes, then the edges leaving the next batch of resolved nodes.
+         *
+         * @return {@code true} while work remains.
+         */
+        boolean step() {
+            if (locationCursor < locations.size()) {
+                int end = Math.min(locations.size(), locationCursor + NODES_PER_STEP);
+                for (; locationCursor < end; locationCursor++) {
+                    appendNode(locations.get(locationCursor));
+                }
+                return true;
+            }
+            int end = Math.min(resolvedNodes.size(), edgeCursor + NODES_PER_STEP);
+            for (; edgeCursor < end; edgeCursor++) {
+                appendEdges(resolvedNodes.get(edgeCursor));
+            }
+            return edgeCursor < resolvedNodes.size();
         }
-        String graphId = graph.id.toString();
-        int checksum = graph.getChecksum();
-        int color = extractColor(graph);
-        CreateNetworkSnapshot.GraphInfo graphInfo = new CreateNetworkSnapshot.GraphInfo(graphId, checksum, color, updatedAt);
 
-        List<CreateNetworkSnapshot.NodeInfo> nodes = new ArrayList<CreateNetworkSnapshot.NodeInfo>();
-        List<TrackNode> resolvedNodes = new ArrayList<TrackNode>();
-        for (TrackNodeLocation location : graph.getNodes()) {
+        /**
+         * @return {@code true} if the graph's checksum still matches the one taken when the capture started, i.e. the
+         * copied pieces all come from the same version of the graph.
+         */
+        boolean isConsistent() {
+            return graph == null || graph.id == null || graph.getChecksum() == checksum;
+        }
+
+        String getGraphId() {
+            return graphId;
+        }
+
+        CreateNetworkSnapshot finish() {
+            if (graphId == null) {
+                return new CreateNetworkSnapshot(Collections.<CreateNetworkSnapshot.GraphInfo>emptyList(),
+                    Collections.<CreateNetworkSnapshot.NodeInfo>emptyList(),
+                    Collections.<CreateNetworkSnapshot.EdgeInfo>emptyList(),
+                    Collections.<CreateNetworkSnapshot.EdgePolylinePoint>emptyList(),
+                    Collections.<CreateNetworkSnapshot.StationInfo>emptyList(),
+                    Collections.<CreateNetworkSnapshot.SignalBoundaryInfo>emptyList(),
+                    Collections.<CreateNetworkSnapshot.EdgeSegmentInfo>emptyList());
+            }
+            CreateNetworkSnapshot.GraphInfo graphInfo =
+                new CreateNetworkSnapshot.GraphInfo(graphId, checksum, extractColor(graph), updatedAt);
+            return new CreateNetworkSnapshot(
+                Collections.singletonList(graphInfo),
+                nodes,
+                edges,
+                polylines,
+                stations,
+                boundaries,
+                segments
+            );
+        }
+
+        private void appendNode(TrackNodeLocation location) {
             TrackNode node = graph.locateNode(location);
             if (node == null) {
-                continue;
+                return;
             }
             resolvedNodes.add(node);
             Vec3 position = location.getLocation();
@@ -71,17 +147,10 @@ final class CreateGraphSnapshotBuilder {
             ));
         }
 
-        Set<TrackEdge> visited = Collections.newSetFromMap(new IdentityHashMap<TrackEdge, Boolean>());
-        List<CreateNetworkSnapshot.EdgeInfo> edges = new ArrayList<CreateNetworkSnapshot.EdgeInfo>();
-        List<CreateNetworkSnapshot.EdgePolylinePoint> polylines = new ArrayList<CreateNetworkSnapshot.EdgePolylinePoint>();
-        List<CreateNetworkSnapshot.StationInfo> stations = new ArrayList<CreateNetworkSnapshot.StationInfo>();
-        List<CreateNetworkSnapshot.SignalBoundaryInfo> boundaries = new ArrayList<CreateNetworkSnapshot.SignalBoundaryInfo>();
-        List<CreateNetworkSnapshot.EdgeSegmentInfo> segments = new ArrayList<CreateNetworkSnapshot.EdgeSegmentInfo>();
-
-        for (TrackNode node : resolvedNodes) {
+        private void appendEdges(TrackNode node) {
             Map<TrackNode, TrackEdge> connections = graph.getConnectionsFrom(node);
             if (connections == null) {
-                continue;
+                return;
             }
             for (TrackEdge edge : connections.values()) {
                 if (edge == null || !visited.add(edge)) {
@@ -120,16 +189,6 @@ final class CreateGraphSnapshotBuilder {
                 appendSegments(graph, edge, edgeId, edgeData, segments);
             }
         }
-
-        return new CreateNetworkSnapshot(
-            Collections.singletonList(graphInfo),
-            nodes,
-            edges,
-            polylines,
-            stations,
-            boundaries,
-            segments
-        );
     }
 
     private static void appendPolyline(TrackGraph graph, TrackEdge edge, String edgeId,
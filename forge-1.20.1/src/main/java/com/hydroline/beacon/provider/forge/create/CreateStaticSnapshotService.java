@@ -3,9 +3,13 @@ package com.hydroline.beacon.provider.forge.create;
 import com.hydroline.beacon.provider.BeaconProviderMod;
 import com.hydroline.beacon.provider.create.CreateDatabase;
 import com.hydroline.beacon.provider.create.CreateNetworkSnapshot;
+import com.hydroline.beacon.provider.service.BeaconMetrics;
+import com.hydroline.beacon.provider.service.TickBudget;
 import com.simibubi.create.content.trains.RailwaySavedData;
 import com.simibubi.create.content.trains.graph.TrackGraph;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -13,17 +17,29 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import net.minecraft.server.MinecraftServer;
 
+/**
+ * Periodically mirrors changed Create track graphs into the cache database. The scheduler thread reads the stored
+ * checksums; the graphs themselves are copied on the server tick within {@code beacon.createCaptureBudgetMs} per tick,
+ * and the database writes go back to the scheduler thread.
+ */
 final class CreateStaticSnapshotService {
     private static final long DEFAULT_INTERVAL_MILLIS = 5 * 60 * 1000L;
+    private static final long CAPTURE_BUDGET_MILLIS = Long.getLong("beacon.createCaptureBudgetMs", 5L);
+    private static final int MAX_RESTARTS = 3;
 
     private final Supplier<MinecraftServer> serverSupplier;
     private final CreateDatabase database;
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final AtomicBoolean inFlight = new AtomicBoolean(false);
+    private final AtomicReference<Map<String, Integer>> pending = new AtomicReference<Map<String, Integer>>();
+    private final TickBudget budget = new TickBudget("capture.create", CAPTURE_BUDGET_MILLIS);
     private ScheduledExecutorService scheduler;
+    // only touched from the server thread
+    private Refresh refresh;
 
     CreateStaticSnapshotService(Supplier<MinecraftServer> serverSupplier, CreateDatabase database) {
         this.serverSupplier = serverSupplier;
@@ -51,53 +67,153 @@ final class CreateStaticSnapshotService {
         scheduler = null;
     }
 
+    /**
+     * Advances a pending refresh; must be called on the server thread once per tick.
+     */
+    void onServerTick() {
+        if (refresh == null) {
+            Map<String, Integer> checksums = pending.getAndSet(null);
+            if (checksums == null) {
+                return;
+            }
+            MinecraftServer server = serverSupplier.get();
+            RailwaySavedData data = server == null ? null : RailwaySavedData.load(server);
+            if (data == null) {
+                inFlight.set(false);
+                return;
+            }
+            refresh = new Refresh(data.getTrackNetworks(), checksums);
+        }
+        boolean finished;
+        try {
+            finished = budget.run(refresh::step);
+        } catch (Throwable throwable) {
+            BeaconProviderMod.LOGGER.debug("Failed to refresh Create static snapshot", throwable);
+            refresh = null;
+            inFlight.set(false);
+            return;
+        }
+        BeaconMetrics.setGauge(budget.metric("remainingGraphs"), refresh.remainingGraphs());
+        if (finished) {
+            Refresh completed = refresh;
+            refresh = null;
+            persist(completed);
+        }
+    }
+
     private void tick() {
-        if (!running.get() || !inFlight.compareAndSet(false, true)) {
+        if (!running.get() || database == null || !inFlight.compareAndSet(false, true)) {
             return;
         }
-        MinecraftServer server = serverSupplier.get();
-        if (server == null) {
+        try {
+            pending.set(database.loadGraphChecksums());
+        } catch (Throwable throwable) {
+            BeaconProviderMod.LOGGER.debug("Failed to load Create graph checksums", throwable);
             inFlight.set(false);
-            return;
         }
-        server.execute(() -> {
-            try {
-                refresh(server);
-            } catch (Throwable throwable) {
-                BeaconProviderMod.LOGGER.debug("Failed to refresh Create static snapshot", throwable);
-            } finally {
-                inFlight.set(false);
-            }
-        });
     }
 
-    private void refresh(MinecraftServer server) {
-        RailwaySavedData data = RailwaySavedData.load(server);
-        if (data == null || database == null) {
+    private void persist(Refresh completed) {
+        ScheduledExecutorService current = scheduler;
+        if (current == null || !running.get()) {
+            inFlight.set(false);
             return;
         }
-        Map<String, Integer> checksums = database.loadGraphChecksums();
-        Set<String> seen = new HashSet<String>();
-        long now = System.currentTimeMillis();
-        for (Map.Entry<UUID, TrackGraph> entry : data.getTrackNetworks().entrySet()) {
-            String graphId = entry.getKey().toString();
-            TrackGraph graph = entry.getValue();
-            if (graph == null) {
-                continue;
+        try {
+            current.execute(() -> {
+                try {
+                    for (CreateNetworkSnapshot snapshot : completed.captured) {
+                        database.upsertGraph(snapshot);
+                    }
+                    for (String graphId : completed.removedGraphIds()) {
+                        database.deleteGraph(graphId);
+                    }
+                    BeaconMetrics.add(budget.metric("graphs"), completed.captured.size());
+                } catch (Throwable throwable) {
+                    BeaconProviderMod.LOGGER.debug("Failed to store Create static snapshot", throwable);
+                } finally {
+                    inFlight.set(false);
+                }
+            });
+        } catch (RuntimeException ex) {
+            inFlight.set(false);
+        }
+    }
+
+    /**
+     * One pass over the track networks: graphs whose checksum differs from the stored one are captured one at a time,
+     * restarting a graph whose checksum moved while it was being copied.
+     */
+    private static final class Refresh {
+        private final List<TrackGraph> graphs = new ArrayList<TrackGraph>();
+        private final Map<String, Integer> storedChecksums;
+        private final Set<String> seen = new HashSet<String>();
+        private final List<CreateNetworkSnapshot> captured = new ArrayList<CreateNetworkSnapshot>();
+        private final long startedAt = System.currentTimeMillis();
+        private int next;
+        private CreateGraphSnapshotBuilder.Capture current;
+        private int restarts;
+
+        private Refresh(Map<UUID, TrackGraph> networks, Map<String, Integer> storedChecksums) {
+            for (Map.Entry<UUID, TrackGraph> entry : networks.entrySet()) {
+                TrackGraph graph = entry.getValue();
+                if (graph == null) {
+                    continue;
+                }
+                seen.add(entry.getKey().toString());
+                if (graph.id != null) {
+                    graphs.add(graph);
+                }
+            }
+            this.storedChecksums = storedChecksums;
+        }
+
+        /**
+         * @return {@code true} while work remains.
+         */
+        private boolean step() {
+            if (current == null) {
+                while (next < graphs.size()) {
+                    TrackGraph graph = graphs.get(next++);
+                    Integer existing = storedChecksums.get(graph.id.toString());
+                    if (existing == null || existing.intValue() != graph.getChecksum()) {
+                        current = CreateGraphSnapshotBuilder.start(graph, startedAt);
+                        restarts = 0;
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (current.step()) {
+                return true;
             }
-            seen.add(graphId);
-            int checksum = graph.getChecksum();
-            Integer existing = checksums.get(graphId);
-            if (existing != null && existing.intValue() == checksum) {
-                continue;
+            if (current.isConsistent()) {
+                captured.add(current.finish());
+            } else if (restarts < MAX_RESTARTS) {
+                restarts++;
+                BeaconMetrics.increment("capture.create.restarts");
+                current = CreateGraphSnapshotBuilder.start(graphs.get(next - 1), startedAt);
+                return true;
+            } else {
+                // still changing; the stored checksum stays stale so the next pass picks it up again
+                BeaconProviderMod.LOGGER.debug("Skipping Create graph {} modified during capture", current.getGraphId());
             }
-            CreateNetworkSnapshot snapshot = CreateGraphSnapshotBuilder.build(graph, now);
-            database.upsertGraph(snapshot);
+            current = null;
+            return next < graphs.size();
         }
-        for (String graphId : checksums.keySet()) {
-            if (!seen.contains(graphId)) {
-                database.deleteGraph(graphId);
+
+        private int remainingGraphs() {
+            return graphs.size() - next + (current == null ? 0 : 1);
+        }
+
+        private List<String> removedGraphIds() {
+            List<String> removed = new ArrayList<String>();
+            for (String graphId : storedChecksums.keySet()) {
+                if (!seen.contains(graphId)) {
+                    removed.add(graphId);
+                }
             }
+            return removed;
         }
     }
 }
@@ -4,9 +4,13 @@ import com.hydroline.beacon.provider.BeaconProviderMod;
 import com.hydroline.beacon.provider.create.CreateDatabase;
 import com.hydroline.beacon.provider.create.CreateNetworkSnapshot;
 import com.hydroline.beacon.provider.create.CreateQueryGateway;
+import com.hydroline.beacon.provider.create.CreateRealtimeFeed;
 import com.hydroline.beacon.provider.create.CreateRealtimeSnapshot;
+import com.hydroline.beacon.provider.util.ContentVersion;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import net.minecraft.server.MinecraftServer;
@@ -34,7 +38,10 @@ public final class ForgeCreateQueryGateway implements CreateQueryGateway {
         } catch (Exception ex) {
             BeaconProviderMod.LOGGER.warn("Failed to initialize Create cache database", ex);
         }
-        this.realtimeChannel = new CreateRealtimeChannel(serverSupplier, snapshot -> ready.set(snapshot != null));
+        this.realtimeChannel = new CreateRealtimeChannel(serverSupplier, snapshot -> {
+            ready.set(snapshot != null);
+            CreateRealtimeFeed.publish(snapshot);
+        });
         this.staticSnapshotService = new CreateStaticSnapshotService(serverSupplier, database);
         realtimeChannel.start();
         staticSnapshotService.start();
@@ -63,6 +70,16 @@ public final class ForgeCreateQueryGateway implements CreateQueryGateway {
         ready.set(false);
     }
 
+    /**
+     * Must be invoked on the server thread at the end of every server tick.
+     */
+    public void onServerTick() {
+        CreateStaticSnapshotService service = staticSnapshotService;
+        if (service != null) {
+            service.onServerTick();
+        }
+    }
+
     @Override
     public boolean isReady() {
         return started.get() && ready.get();
@@ -80,6 +97,27 @@ public final class ForgeCreateQueryGateway implements CreateQueryGateway {
         return Optional.of(current.queryNetworkSnapshot(graphId, includePolylines));
     }
 
+    @Override
+    public Optional<String> fetchNetworkVersion(String graphId) {
+        CreateDatabase current = database;
+        if (current == null) {
+            return Optional.empty();
+        }
+        Map<String, Integer> checksums = new TreeMap<String, Integer>(current.loadGraphChecksums());
+        if (graphId != null) {
+            Integer checksum = checksums.get(graphId);
+            if (checksum == null) {
+                return Optional.empty();
+            }
+            return Optional.of(ContentVersion.create().update(graphId).update(checksum).finish());
+        }
+        ContentVersion version = ContentVersion.create();
+        for (Map.Entry<String, Integer> entry : checksums.entrySet()) {
+            version.update(entry.getKey()).update(entry.getValue());
+        }
+        return Optional.of(version.finish());
+    }
+
     @Override
     public CreateRealtimeSnapshot fetchRealtimeSnapshot() {
         CreateRealtimeChannel channel = realtimeChannel;
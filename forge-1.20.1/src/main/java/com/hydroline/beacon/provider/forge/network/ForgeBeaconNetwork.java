@@ -1,13 +1,11 @@
 package com.hydroline.beacon.provider.forge.network;
 
 import com.hydroline.beacon.provider.gateway.BeaconGatewayManager;
-import com.hydroline.beacon.provider.protocol.BeaconResponse;
 import com.hydroline.beacon.provider.protocol.ChannelConstants;
-import com.hydroline.beacon.provider.protocol.MessageSerializer;
 import com.hydroline.beacon.provider.service.BeaconProviderService;
 import com.hydroline.beacon.provider.service.BeaconServiceFactory;
 import com.hydroline.beacon.provider.transport.ChannelMessageRouter;
-import com.hydroline.beacon.provider.transport.ChannelMessenger;
+import com.hydroline.beacon.provider.transport.FragmentingChannelMessenger;
 import com.hydroline.beacon.provider.create.CreateQueryGateway;
 import com.hydroline.beacon.provider.create.CreateQueryRegistry;
 import com.hydroline.beacon.provider.mtr.MtrQueryGateway;
@@ -29,6 +27,7 @@ import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.event.server.ServerStartingEvent;
 import net.minecraftforge.event.server.ServerStoppedEvent;
@@ -48,6 +47,7 @@ public final class ForgeBeaconNetwork {
     private final ChannelMessageRouter router;
     private final ForgeChannelMessenger messenger;
     private final BeaconGatewayManager gatewayManager;
+    private ForgeMtrQueryGateway mtrGateway;
     private ForgeCreateQueryGateway createGateway;
 
     public ForgeBeaconNetwork() {
@@ -62,7 +62,8 @@ public final class ForgeBeaconNetwork {
     public void onServerStarting(ServerStartingEvent event) {
         MinecraftServer server = event.getServer();
         messenger.setServer(server);
-        MtrQueryRegistry.register(new ForgeMtrQueryGateway(() -> server));
+        mtrGateway = new ForgeMtrQueryGateway(() -> server);
+        MtrQueryRegistry.register(mtrGateway);
         if (ModList.get().isLoaded("create")) {
             createGateway = new ForgeCreateQueryGateway(() -> server);
             createGateway.start(FMLPaths.CONFIGDIR.get());
@@ -76,6 +77,8 @@ public final class ForgeBeaconNetwork {
     @SubscribeEvent
     public void onServerStopped(ServerStoppedEvent event) {
         messenger.setServer(null);
+        messenger.discardAll();
+        mtrGateway = null;
         MtrQueryRegistry.register(MtrQueryGateway.UNAVAILABLE);
         CreateQueryRegistry.register(CreateQueryGateway.UNAVAILABLE);
         if (createGateway != null) {
@@ -85,6 +88,21 @@ public final class ForgeBeaconNetwork {
         gatewayManager.stop();
     }
 
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        ForgeMtrQueryGateway gateway = mtrGateway;
+        if (gateway != null) {
+            gateway.onServerTick();
+        }
+        if (createGateway != null) {
+            createGateway.onServerTick();
+        }
+        messenger.onServerTick();
+    }
+
     @SubscribeEvent
     public void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent event) {
         if (event.getEntity() instanceof ServerPlayer player) {
@@ -158,9 +176,8 @@ public final class ForgeBeaconNetwork {
             }
             byte[] bytes = new byte[payload.readableBytes()];
             payload.readBytes(bytes);
-            MinecraftServer server = messenger.getServer();
-            if (server != null) {
-                server.execute(() -> router.handleIncoming(playerUuid, bytes));
+            if (messenger.getServer() != null) {
+                router.handleIncoming(playerUuid, bytes);
             }
         }
 
@@ -170,7 +187,7 @@ public final class ForgeBeaconNetwork {
         }
     }
 
-    private static final class ForgeChannelMessenger implements ChannelMessenger {
+    private static final class ForgeChannelMessenger extends FragmentingChannelMessenger {
         private volatile MinecraftServer server;
 
         void setServer(MinecraftServer server) {
@@ -182,19 +199,15 @@ public final class ForgeBeaconNetwork {
         }
 
         @Override
-        public void reply(UUID playerUuid, BeaconResponse response) {
+        protected boolean sendPacket(UUID playerUuid, byte[] packet) {
             MinecraftServer current = server;
-            if (current == null) {
-                return;
-            }
-            ServerPlayer player = current.getPlayerList().getPlayer(playerUuid);
+            ServerPlayer player = current == null ? null : current.getPlayerList().getPlayer(playerUuid);
             if (player == null) {
-                return;
+                return false;
             }
-            byte[] bytes = MessageSerializer.serialize(response);
-            FriendlyByteBuf reply = new FriendlyByteBuf(Unpooled.buffer(bytes.length));
-            reply.writeBytes(bytes);
+            FriendlyByteBuf reply = new FriendlyByteBuf(Unpooled.wrappedBuffer(packet));
             player.connection.send(new ClientboundCustomPayloadPacket(CHANNEL_ID, reply));
+            return true;
         }
     }
 }
@@ -4,6 +4,7 @@ import fs from "node:fs";
 import path from "node:path";
 import crypto from "node:crypto";
 import process from "node:process";
+import zlib from "node:zlib";
 import { fileURLToPath } from "node:url";
 import msgpack from "msgpack-lite";
 
@@ -382,6 +383,74 @@ export class GatewayClient {
   }
 }
 
+/**
+ * Reference reassembler for responses received over the plugin channel
+ * (hydroline:beacon_provider), e.g. in a Bukkit PluginMessageListener.
+ * A packet starting with "{" is a complete JSON response; a packet starting
+ * with the fragment marker 0xB1 is one frame:
+ * [marker u8][flags u8][idLen u8][requestId][index u16][count u16][slice].
+ * Flag 0x01 marks a zlib-compressed body (request sent with
+ * "compression": "deflate").
+ * push() returns the parsed response once every frame of a request arrived.
+ */
+export class PluginMessageReassembler {
+  static MARKER = 0xb1;
+  static FLAG_DEFLATE = 0x01;
+
+  constructor({ timeoutMs = 30000 } = {}) {
+    this.timeoutMs = timeoutMs;
+    this.partial = new Map();
+  }
+
+  push(packet) {
+    const buffer = Buffer.from(packet);
+    if (buffer.length === 0) {
+      return null;
+    }
+    if (buffer[0] !== PluginMessageReassembler.MARKER) {
+      return JSON.parse(buffer.toString("utf8"));
+    }
+    const flags = buffer.readUInt8(1);
+    const idLength = buffer.readUInt8(2);
+    const requestId = buffer.toString("ascii", 3, 3 + idLength);
+    const index = buffer.readUInt16BE(3 + idLength);
+    const count = buffer.readUInt16BE(5 + idLength);
+    const slice = buffer.subarray(7 + idLength);
+    this._expire();
+    let entry = this.partial.get(requestId);
+    if (!entry || entry.count !== count) {
+      entry = { count, flags, received: 0, slices: new Array(count), startedAt: Date.now() };
+      this.partial.set(requestId, entry);
+    }
+    if (index >= count || entry.slices[index]) {
+      return null;
+    }
+    entry.slices[index] = slice;
+    entry.received += 1;
+    if (entry.received < count) {
+      return null;
+    }
+    this.partial.delete(requestId);
+    return JSON.parse(this._decode(Buffer.concat(entry.slices), entry.flags).toString("utf8"));
+  }
+
+  _decode(body, flags) {
+    if (flags & PluginMessageReassembler.FLAG_DEFLATE) {
+      return zlib.inflateSync(body);
+    }
+    return body;
+  }
+
+  _expire() {
+    const now = Date.now();
+    for (const [requestId, entry] of this.partial) {
+      if (now - entry.startedAt > this.timeoutMs) {
+        this.partial.delete(requestId);
+      }
+    }
+  }
+}
+
 async function prepareOutputDir(dir) {
   if (fs.existsSync(dir)) {
     await fs.promises.rm(dir, { recursive: true, force: true });